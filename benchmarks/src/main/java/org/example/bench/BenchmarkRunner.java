@@ -0,0 +1,29 @@
+package org.example.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа benchmarks.jar: те же аргументы, что у org.openjdk.jmh.Main,
+ * но GC-профайлер (скорость аллокаций, норма на операцию) включен всегда,
+ * а результаты дополнительно пишутся в target/jmh-result.json для сравнения между прогонами.
+ * <p>
+ * Пример: java -jar target/benchmarks.jar Dao -p subscribers=10000
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cli).addProfiler(GCProfiler.class);
+        if (!cli.getResult().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON).result("target/jmh-result.json");
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.bench;
+
+import org.example.dao.api.InvoiceDao;
+import org.example.dao.api.KeysetPage;
+import org.example.dao.api.ServiceDao;
+import org.example.dao.api.SubscriberDao;
+import org.example.dao.api.SubscriberDetailsView;
+import org.example.dao.api.SubscriberSort;
+import org.example.dao.impl.InvoiceDaoImpl;
+import org.example.dao.impl.ServiceDaoImpl;
+import org.example.dao.impl.SubscriberDaoImpl;
+import org.example.db.DataInitializer;
+import org.example.db.DatasetSpec;
+import org.example.db.JpaManager;
+import org.example.entity.Invoice;
+import org.example.entity.Subscriber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DAO на встроенной H2 (профиль h2): каждая комбинация параметров - отдельный JVM со своей БД в памяти,
+ * заполненной детерминированным набором данных.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dtelecom.db.profile=h2")
+public class DaoBenchmark {
+
+    @Param({"1000", "10000"})
+    public int subscribers;
+
+    @Param({"3"})
+    public int invoicesPerSubscriber;
+
+    private SubscriberDao subscriberDao;
+    private InvoiceDao invoiceDao;
+    private int detailsId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        subscriberDao = new SubscriberDaoImpl();
+        invoiceDao = new InvoiceDaoImpl();
+        ServiceDao serviceDao = new ServiceDaoImpl();
+
+        DataInitializer.generateDataset(serviceDao, new DatasetSpec(subscribers, 50, invoicesPerSubscriber, 42));
+        KeysetPage<Subscriber> first = subscriberDao.findPage(SubscriberSort.ID, null, false, 1);
+        detailsId = first.isEmpty() ? -1 : first.getItems().get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        JpaManager.shutdown();
+    }
+
+    @Benchmark
+    public List<Subscriber> subscriberFindAll() {
+        return subscriberDao.findAll();
+    }
+
+    @Benchmark
+    public KeysetPage<Subscriber> subscriberFindPage() {
+        return subscriberDao.findPage(SubscriberSort.NAME, null, false, 50);
+    }
+
+    @Benchmark
+    public SubscriberDetailsView subscriberFindDetails() {
+        return subscriberDao.findDetails(detailsId);
+    }
+
+    @Benchmark
+    public List<Invoice> invoiceFindUnpaid() {
+        return invoiceDao.findUnpaid();
+    }
+
+    @Benchmark
+    public List<Invoice> invoiceFindUnpaidWithSubscriber() {
+        return invoiceDao.findUnpaid(InvoiceDao.WITH_SUBSCRIBER);
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.bench;
+
+import org.example.util.PasswordUtil;
+import org.example.util.Pbkdf2PasswordHasher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость входа: PBKDF2 при числе итераций из web.xml (passwordIterations) и старый
+ * SHA-256 из PasswordUtil как базовая линия. По среднему времени verify подбираются
+ * passwordThreads и passwordTimeoutMs.
+ * <p>
+ * Пример: java -jar target/benchmarks.jar PasswordHasher -p iterations=600000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHasherBenchmark {
+
+    @Param({"admin", "correct horse battery staple"})
+    public String password;
+
+    @Param({"600000"})
+    public int iterations;
+
+    private Pbkdf2PasswordHasher hasher;
+    private String encoded;
+    private String legacyEncoded;
+
+    @Setup
+    public void setUp() {
+        hasher = new Pbkdf2PasswordHasher(iterations);
+        encoded = hasher.hash(password);
+        legacyEncoded = PasswordUtil.hash(password);
+    }
+
+    @Benchmark
+    public String hash() {
+        return hasher.hash(password);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return hasher.verify(password, encoded);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String legacyHash() {
+        return PasswordUtil.hash(password);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean legacyVerify() {
+        return hasher.verify(password, legacyEncoded);
+    }
+}
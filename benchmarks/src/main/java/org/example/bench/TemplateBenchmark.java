@@ -0,0 +1,135 @@
+package org.example.bench;
+
+import org.example.dao.api.InvoiceView;
+import org.example.dao.api.KeysetPage;
+import org.example.dao.api.ServiceView;
+import org.example.dao.api.SubscriberDetailsView;
+import org.example.entity.Role;
+import org.example.entity.Service;
+import org.example.entity.Subscriber;
+import org.example.entity.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рендеринг шаблонов приложения без контейнера и БД: модель собирается в памяти,
+ * кэш разобранных шаблонов включен, как в рабочем режиме.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+
+    private static final String CONTEXT_PATH = "/DemoThymeleaf";
+
+    @Param({"50", "200"})
+    public int rows;
+
+    private TemplateEngine engine;
+    private Context subscribersContext;
+    private Context detailsContext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        resolver.setCacheable(true);
+
+        engine = new TemplateEngine();
+        engine.setTemplateResolver(resolver);
+        engine.setLinkBuilder(new FixedContextLinkBuilder());
+
+        User admin = new User("admin", "", Role.ADMIN);
+
+        List<Subscriber> subscribers = new ArrayList<>(rows);
+        for (int i = 1; i <= rows; i++) {
+            Subscriber subscriber = new Subscriber("Абонент " + i, "+37529" + String.format("%07d", i),
+                    i * 1.5 - 40, i % 17 == 0);
+            subscriber.setId(i);
+            subscribers.add(subscriber);
+        }
+        KeysetPage<Subscriber> page = new KeysetPage<>(subscribers, true, true, "next", "prev");
+
+        subscribersContext = new Context();
+        subscribersContext.setVariable("page", page);
+        subscribersContext.setVariable("subscribers", page.getItems());
+        subscribersContext.setVariable("sort", "id");
+        subscribersContext.setVariable("pageSize", rows);
+        subscribersContext.setVariable("visitCount", 3);
+        subscribersContext.setVariable("currentUser", admin);
+
+        List<ServiceView> services = new ArrayList<>();
+        List<Service> allServices = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            Service service = new Service("Услуга " + i, 10.0 * i);
+            service.setId(i);
+            allServices.add(service);
+            if (i <= 4) {
+                services.add(new ServiceView(i, service.getName(), service.getMonthlyFee()));
+            }
+        }
+        List<InvoiceView> invoices = new ArrayList<>(rows);
+        LocalDate date = LocalDate.of(2025, 1, 1);
+        for (int i = 1; i <= rows; i++) {
+            invoices.add(new InvoiceView(i, 100 + i, date.plusDays(i), i % 3 != 0));
+        }
+        SubscriberDetailsView details = new SubscriberDetailsView(1, "Иван Иванов", "+375291234567",
+                150.5, false, services, invoices);
+
+        detailsContext = new Context();
+        detailsContext.setVariable("subscriber", details);
+        detailsContext.setVariable("services", details.getServices());
+        detailsContext.setVariable("invoices", details.getInvoices());
+        detailsContext.setVariable("allServices", allServices);
+        detailsContext.setVariable("currentUser", admin);
+    }
+
+    @Benchmark
+    public String renderSubscribers() {
+        return engine.process("subscribers", subscribersContext);
+    }
+
+    @Benchmark
+    public String renderSubscriberDetails() {
+        return engine.process("subscriber-details", detailsContext);
+    }
+
+    /**
+     * Вне веб-контекста Thymeleaf не знает context path и отказывается строить ссылки вида @{/app};
+     * подставляем фиксированный, как у развернутого приложения.
+     */
+    static final class FixedContextLinkBuilder extends StandardLinkBuilder {
+        @Override
+        protected String computeContextPath(IExpressionContext context, String base, Map<String, Object> parameters) {
+            return CONTEXT_PATH;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.loadtest;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Взвешенная смесь команд, например "showAllSubscribers=40,details=35,pay=10".
+ */
+class CommandMix {
+
+    private final List<String> commands = new ArrayList<>();
+    private final int[] cumulative;
+    private final int total;
+
+    CommandMix(String spec) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Неверный элемент смеси команд: " + part);
+            }
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) {
+                weights.put(kv[0].trim(), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Смесь команд пуста: " + spec);
+        }
+
+        cumulative = new int[weights.size()];
+        int sum = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> e : weights.entrySet()) {
+            commands.add(e.getKey());
+            sum += e.getValue();
+            cumulative[i++] = sum;
+        }
+        total = sum;
+    }
+
+    String next(Random random) {
+        int r = random.nextInt(total);
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) {
+                return commands.get(i);
+            }
+        }
+        return commands.get(commands.size() - 1);
+    }
+
+    List<String> getCommands() {
+        return commands;
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.loadtest;
+
+import org.example.metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Задержки и ошибки одной команды за фазу измерения.
+ */
+class CommandStats {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    void record(long nanos, boolean ok) {
+        latency.record(nanos);
+        if (!ok) {
+            errors.increment();
+        }
+    }
+
+    long getCount() {
+        return latency.getCount();
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+
+    double percentileMillis(double quantile) {
+        return latency.quantileNanos(quantile) / 1_000_000.0;
+    }
+
+    double maxMillis() {
+        return latency.getMaxNanos() / 1_000_000.0;
+    }
+
+    double meanMillis() {
+        long count = latency.getCount();
+        return count == 0 ? 0 : latency.getSumNanos() / 1_000_000.0 / count;
+    }
+}
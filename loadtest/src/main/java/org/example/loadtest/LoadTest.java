@@ -0,0 +1,187 @@
+package org.example.loadtest;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.example.dao.impl.ServiceDaoImpl;
+import org.example.db.DataInitializer;
+import org.example.db.DatasetSpec;
+import org.example.db.JpaManager;
+import org.example.db.UnitOfWork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Сквозной нагрузочный тест приложения.
+ * <p>
+ * Поднимает webapp во встроенном Jetty на встроенной БД, заполняет ее синтетическими данными,
+ * запускает виртуальных пользователей (каждый со своей сессией, вошедших как admin)
+ * и после прогрева измеряет по каждой команде пропускную способность, p50/p95/p99 и долю ошибок.
+ * Параметры задаются системными свойствами loadtest.*; отчет пишется в JSON.
+ */
+public class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private static final String CONTEXT_PATH = "/DemoThymeleaf";
+    // Вход намеренно дорог (PBKDF2 в ограниченном пуле) и в смеси по умолчанию заслонил бы измеряемые
+    // страницы задержкой хеширования и ответами 503; его нагрузку задают явно: -Dloadtest.mix=...,login=5
+    private static final String DEFAULT_MIX =
+            "showAllSubscribers=35,details=35,showAllServices=5,showUnpaidInvoices=5,pay=10,home=10";
+
+    public static void main(String[] args) throws Exception {
+        // Профиль выставляется до первого обращения к JpaManager
+        if (System.getProperty(JpaManager.PROFILE_PROPERTY) == null) {
+            System.setProperty(JpaManager.PROFILE_PROPERTY, "h2");
+        }
+
+        int users = Integer.getInteger("loadtest.users", 32);
+        int warmupSeconds = Integer.getInteger("loadtest.warmupSeconds", 10);
+        int durationSeconds = Integer.getInteger("loadtest.durationSeconds", 60);
+        long thinkTimeMillis = Long.getLong("loadtest.thinkTimeMs", 0L);
+        int subscribers = Integer.getInteger("loadtest.subscribers", 10_000);
+        int invoicesPerSubscriber = Integer.getInteger("loadtest.invoicesPerSubscriber", 3);
+        long seed = Long.getLong("loadtest.seed", 42L);
+        CommandMix mix = new CommandMix(System.getProperty("loadtest.mix", DEFAULT_MIX));
+        String webappDir = System.getProperty("loadtest.webapp", "../src/main/webapp");
+        Path reportPath = Path.of(System.getProperty("loadtest.report", "target/loadtest-report.json"));
+
+        DatasetSpec spec = new DatasetSpec(subscribers, 50, invoicesPerSubscriber, seed);
+        DataInitializer.generateDataset(new ServiceDaoImpl(), spec);
+        int[] subscriberIds = ids("SELECT s.id FROM Subscriber s");
+        int[] invoiceIds = ids("SELECT i.id FROM Invoice i WHERE i.isPaid = false");
+
+        Server server = startServer(webappDir, Integer.getInteger("loadtest.port", 0));
+        String appUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort()
+                + CONTEXT_PATH + "/app";
+        logger.info("Приложение запущено: {}", appUrl);
+
+        Map<String, CommandStats> stats = new TreeMap<>();
+        for (String command : mix.getCommands()) {
+            stats.put(command, new CommandStats());
+        }
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean stopped = new AtomicBoolean();
+
+        ExecutorService pool = Executors.newFixedThreadPool(users);
+        for (int i = 0; i < users; i++) {
+            pool.execute(new VirtualUser(appUrl, mix, stats, measuring, stopped,
+                    subscriberIds, invoiceIds, thinkTimeMillis, seed + i));
+        }
+
+        logger.info("Прогрев {} с, пользователей {}", warmupSeconds, users);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        measuring.set(true);
+        long started = System.nanoTime();
+        logger.info("Измерение {} с", durationSeconds);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        measuring.set(false);
+        double measuredSeconds = (System.nanoTime() - started) / 1e9;
+
+        stopped.set(true);
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.SECONDS);
+        String poolStats = JpaManager.getPoolStats().toString();
+        server.stop();
+
+        String report = toJson(spec, users, thinkTimeMillis, measuredSeconds, stats, poolStats);
+        Files.createDirectories(reportPath.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(reportPath, StandardCharsets.UTF_8)) {
+            out.write(report);
+        }
+        printSummary(measuredSeconds, stats);
+        logger.info("Отчет записан в {}", reportPath.toAbsolutePath());
+    }
+
+    private static Server startServer(String webappDir, int port) throws Exception {
+        Server server = new Server(port);
+        WebAppContext webapp = new WebAppContext();
+        webapp.setContextPath(CONTEXT_PATH);
+        webapp.setResourceBase(webappDir);
+        webapp.setDescriptor(webappDir + "/WEB-INF/web.xml");
+        // Классы приложения уже в classpath теста: фильтры и JpaManager общие с кодом, заполнившим БД
+        webapp.setParentLoaderPriority(true);
+        server.setHandler(webapp);
+        server.start();
+        return server;
+    }
+
+    private static int[] ids(String jpql) {
+        List<Integer> ids = UnitOfWork.read("Ошибка чтения id для нагрузочного теста.",
+                em -> em.createQuery(jpql, Integer.class).getResultList());
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static String toJson(DatasetSpec spec, int users, long thinkTimeMillis, double seconds,
+                                 Map<String, CommandStats> stats, String poolStats) {
+        long totalCount = 0;
+        long totalErrors = 0;
+        StringBuilder commands = new StringBuilder();
+        for (Map.Entry<String, CommandStats> e : stats.entrySet()) {
+            CommandStats s = e.getValue();
+            totalCount += s.getCount();
+            totalErrors += s.getErrors();
+            if (commands.length() > 0) {
+                commands.append(",\n");
+            }
+            commands.append("    \"").append(escape(e.getKey())).append("\": {")
+                    .append("\"count\": ").append(s.getCount())
+                    .append(", \"errors\": ").append(s.getErrors())
+                    .append(", \"errorRate\": ").append(num(rate(s.getErrors(), s.getCount())))
+                    .append(", \"throughputPerSec\": ").append(num(s.getCount() / seconds))
+                    .append(", \"meanMs\": ").append(num(s.meanMillis()))
+                    .append(", \"p50Ms\": ").append(num(s.percentileMillis(0.50)))
+                    .append(", \"p95Ms\": ").append(num(s.percentileMillis(0.95)))
+                    .append(", \"p99Ms\": ").append(num(s.percentileMillis(0.99)))
+                    .append(", \"maxMs\": ").append(num(s.maxMillis()))
+                    .append('}');
+        }
+        return "{\n"
+                + "  \"dataset\": \"" + escape(spec.toString()) + "\",\n"
+                + "  \"users\": " + users + ",\n"
+                + "  \"thinkTimeMs\": " + thinkTimeMillis + ",\n"
+                + "  \"durationSeconds\": " + num(seconds) + ",\n"
+                + "  \"requests\": " + totalCount + ",\n"
+                + "  \"errors\": " + totalErrors + ",\n"
+                + "  \"errorRate\": " + num(rate(totalErrors, totalCount)) + ",\n"
+                + "  \"throughputPerSec\": " + num(totalCount / seconds) + ",\n"
+                + "  \"connectionPool\": \"" + escape(poolStats) + "\",\n"
+                + "  \"commands\": {\n" + commands + "\n  }\n"
+                + "}\n";
+    }
+
+    private static void printSummary(double seconds, Map<String, CommandStats> stats) {
+        System.out.printf(Locale.ROOT, "%-20s %9s %9s %8s %9s %9s %9s%n",
+                "command", "count", "req/s", "err%", "p50 ms", "p95 ms", "p99 ms");
+        for (Map.Entry<String, CommandStats> e : stats.entrySet()) {
+            CommandStats s = e.getValue();
+            System.out.printf(Locale.ROOT, "%-20s %9d %9.1f %8.2f %9.2f %9.2f %9.2f%n",
+                    e.getKey(), s.getCount(), s.getCount() / seconds, 100 * rate(s.getErrors(), s.getCount()),
+                    s.percentileMillis(0.50), s.percentileMillis(0.95), s.percentileMillis(0.99));
+        }
+    }
+
+    private static double rate(long part, long total) {
+        return total == 0 ? 0 : (double) part / total;
+    }
+
+    private static String num(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
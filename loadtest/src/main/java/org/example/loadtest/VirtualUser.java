@@ -0,0 +1,133 @@
+package org.example.loadtest;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Пользователь со своей сессией (cookie JSESSIONID и cookie визитов), выполняющий команды из смеси до остановки.
+ */
+class VirtualUser implements Runnable {
+
+    private static final String[] SORTS = {"id", "name", "balance"};
+    private static final String ERROR_PAGE_MARKER = "<title>Ошибка</title>";
+
+    private final String appUrl;
+    private final CommandMix mix;
+    private final Map<String, CommandStats> stats;
+    private final AtomicBoolean measuring;
+    private final AtomicBoolean stopped;
+    private final int[] subscriberIds;
+    private final int[] invoiceIds;
+    private final long thinkTimeMillis;
+    private final Random random;
+    private final HttpClient client;
+
+    VirtualUser(String appUrl, CommandMix mix, Map<String, CommandStats> stats, AtomicBoolean measuring,
+                AtomicBoolean stopped, int[] subscriberIds, int[] invoiceIds, long thinkTimeMillis, long seed) {
+        this.appUrl = appUrl;
+        this.mix = mix;
+        this.stats = stats;
+        this.measuring = measuring;
+        this.stopped = stopped;
+        this.subscriberIds = subscriberIds;
+        this.invoiceIds = invoiceIds;
+        this.thinkTimeMillis = thinkTimeMillis;
+        this.random = new Random(seed);
+        this.client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    @Override
+    public void run() {
+        execute("login");
+        while (!stopped.get()) {
+            String command = mix.next(random);
+            long started = System.nanoTime();
+            boolean ok = execute(command);
+            long elapsed = System.nanoTime() - started;
+            if (measuring.get()) {
+                stats.get(command).record(elapsed, ok);
+            }
+            if (thinkTimeMillis > 0) {
+                try {
+                    Thread.sleep(thinkTimeMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean execute(String command) {
+        try {
+            HttpResponse<String> response = client.send(request(command),
+                    HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+            return isSuccess(command, response);
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private HttpRequest request(String command) {
+        switch (command) {
+            case "login":
+                return HttpRequest.newBuilder(URI.create(appUrl))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "command=login&login=admin&password=" + URLEncoder.encode("admin", StandardCharsets.UTF_8)))
+                        .build();
+            case "showAllSubscribers":
+                return get("command=showAllSubscribers&sort=" + SORTS[random.nextInt(SORTS.length)]);
+            case "details":
+                return get("command=details&id=" + pick(subscriberIds));
+            case "pay":
+                return get("command=pay&id=" + pick(invoiceIds));
+            default:
+                return get("command=" + URLEncoder.encode(command, StandardCharsets.UTF_8));
+        }
+    }
+
+    private HttpRequest get(String query) {
+        return HttpRequest.newBuilder(URI.create(appUrl + "?" + query)).GET().build();
+    }
+
+    private int pick(int[] ids) {
+        return ids.length == 0 ? -1 : ids[random.nextInt(ids.length)];
+    }
+
+    /**
+     * Успех - ответ 2xx/3xx, который не является страницей ошибки и не отправляет на форму входа.
+     * Для login успехом считается только редирект: форма входа со статусом 200 означает отказ.
+     */
+    private static boolean isSuccess(String command, HttpResponse<String> response) {
+        int status = response.statusCode();
+        if (status >= 400) {
+            return false;
+        }
+        if (status >= 300) {
+            String location = response.headers().firstValue("Location").orElse("");
+            return !location.contains("command=showLoginForm");
+        }
+        if ("login".equals(command)) {
+            return false;
+        }
+        return !response.body().contains(ERROR_PAGE_MARKER);
+    }
+}
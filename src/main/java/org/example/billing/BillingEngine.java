@@ -0,0 +1,123 @@
+package org.example.billing;
+
+import org.example.dao.api.BillingDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ежемесячный биллинг: диапазон id абонентов режется на партиции фиксированного размера,
+ * партиции обрабатываются параллельно в ForkJoinPool, каждая - своей транзакцией.
+ * Повторный запуск за тот же период выставляет счета только тем, кому их еще нет.
+ */
+public class BillingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(BillingEngine.class);
+
+    private final BillingDao billingDao;
+    private final ForkJoinPool pool;
+    private final int partitionSize;
+    private final AtomicReference<BillingProgress> current = new AtomicReference<>();
+
+    public BillingEngine(BillingDao billingDao, int parallelism, int partitionSize) {
+        this.billingDao = billingDao;
+        this.pool = new ForkJoinPool(parallelism);
+        this.partitionSize = partitionSize;
+    }
+
+    /**
+     * Запускает биллинг за период в фоне.
+     * @return прогресс нового запуска или null, если предыдущий запуск еще не закончился
+     */
+    public BillingProgress start(YearMonth period) {
+        BillingProgress previous = current.get();
+        if (previous != null && previous.isRunning()) {
+            return null;
+        }
+
+        int[] range = billingDao.findSubscriberIdRange();
+        int partitions = range == null ? 0 : (int) ((range[1] - (long) range[0]) / partitionSize + 1);
+        BillingProgress progress = new BillingProgress(period, partitions);
+        if (!current.compareAndSet(previous, progress)) {
+            return null;
+        }
+
+        logger.info("Биллинг за {}: запуск, партиций {}, параллелизм {}", period, partitions, pool.getParallelism());
+        if (partitions == 0) {
+            progress.finish();
+            return progress;
+        }
+
+        LocalDate issueDate = LocalDate.now();
+        pool.execute(() -> {
+            try {
+                new PartitionTask(range[0], 0, partitions, period.toString(), issueDate, progress).invoke();
+            } finally {
+                progress.finish();
+                logger.info("Биллинг за {} завершен: счетов {}, ошибок партиций {}, {} мс",
+                        period, progress.getInvoicesCreated(), progress.getPartitionsFailed(),
+                        progress.getElapsedMillis());
+            }
+        });
+        return progress;
+    }
+
+    /**
+     * @return прогресс текущего или последнего запуска, null если запусков не было
+     */
+    public BillingProgress getProgress() {
+        return current.get();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private class PartitionTask extends RecursiveAction {
+
+        private final int baseId;
+        private final int from;
+        private final int to;
+        private final String period;
+        private final LocalDate issueDate;
+        private final BillingProgress progress;
+
+        PartitionTask(int baseId, int from, int to, String period, LocalDate issueDate, BillingProgress progress) {
+            this.baseId = baseId;
+            this.from = from;
+            this.to = to;
+            this.period = period;
+            this.issueDate = issueDate;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new PartitionTask(baseId, from, mid, period, issueDate, progress),
+                        new PartitionTask(baseId, mid, to, period, issueDate, progress));
+                return;
+            }
+
+            int fromId = (int) Math.min(Integer.MAX_VALUE, baseId + (long) from * partitionSize);
+            int toId = (int) Math.min(Integer.MAX_VALUE, fromId + (long) partitionSize - 1);
+            try {
+                int created = billingDao.billRange(fromId, toId, period, issueDate);
+                progress.partitionDone(created);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Биллинг {}: абоненты {}-{}, счетов {}, готово {}%",
+                            period, fromId, toId, created, progress.getPercent());
+                }
+            } catch (Exception e) {
+                logger.error("Биллинг {}: ошибка в партиции {}-{}", period, fromId, toId, e);
+                progress.partitionFailed(fromId, toId, e);
+            }
+        }
+    }
+}
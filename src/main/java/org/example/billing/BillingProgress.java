@@ -0,0 +1,81 @@
+package org.example.billing;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Состояние запуска биллинга. Обновляется рабочими потоками, читается страницей прогресса.
+ */
+public class BillingProgress {
+
+    private static final int MAX_ERRORS = 50;
+
+    private final YearMonth period;
+    private final int totalPartitions;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicInteger partitionsDone = new AtomicInteger();
+    private final AtomicInteger partitionsFailed = new AtomicInteger();
+    private final AtomicLong invoicesCreated = new AtomicLong();
+    private final List<String> errors = new CopyOnWriteArrayList<>();
+    private volatile long finishedNanos;
+
+    BillingProgress(YearMonth period, int totalPartitions) {
+        this.period = period;
+        this.totalPartitions = totalPartitions;
+    }
+
+    void partitionDone(int invoices) {
+        invoicesCreated.addAndGet(invoices);
+        partitionsDone.incrementAndGet();
+    }
+
+    void partitionFailed(int fromId, int toId, Exception e) {
+        partitionsFailed.incrementAndGet();
+        partitionsDone.incrementAndGet();
+        if (errors.size() < MAX_ERRORS) {
+            errors.add("Абоненты " + fromId + "-" + toId + ": " + e.getMessage());
+        }
+    }
+
+    void finish() {
+        finishedNanos = System.nanoTime();
+    }
+
+    public String getPeriod() { return period.toString(); }
+
+    public String getStartedAt() { return startedAt.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")); }
+
+    public boolean isRunning() { return finishedNanos == 0; }
+
+    public int getTotalPartitions() { return totalPartitions; }
+
+    public int getPartitionsDone() { return partitionsDone.get(); }
+
+    public int getPartitionsFailed() { return partitionsFailed.get(); }
+
+    public long getInvoicesCreated() { return invoicesCreated.get(); }
+
+    public List<String> getErrors() { return new ArrayList<>(errors); }
+
+    public int getPercent() {
+        return totalPartitions == 0 ? 100 : (int) (100L * partitionsDone.get() / totalPartitions);
+    }
+
+    public long getElapsedMillis() {
+        long end = isRunning() ? System.nanoTime() : finishedNanos;
+        return (end - startNanos) / 1_000_000;
+    }
+
+    public double getInvoicesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : invoicesCreated.get() * 1000.0 / elapsed;
+    }
+}
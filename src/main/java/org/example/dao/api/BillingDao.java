@@ -0,0 +1,17 @@
+package org.example.dao.api;
+
+import java.time.LocalDate;
+
+public interface BillingDao {
+    /**
+     * @return {min, max} id абонентов или null, если абонентов нет
+     */
+    int[] findSubscriberIdRange();
+
+    /**
+     * Выставляет счета за период всем абонентам с id из [fromId, toId], у которых есть услуги
+     * и еще нет счета за этот период. Выполняется в одной транзакции.
+     * @return количество созданных счетов
+     */
+    int billRange(int fromId, int toId, String period, LocalDate issueDate);
+}
@@ -0,0 +1,33 @@
+package org.example.dao.api;
+
+import java.util.List;
+
+/**
+ * Набор связей, которые запрос должен загрузить сразу, в том же SQL (fetch join).
+ * Позволяет каждому вызову DAO взять ровно то, что нужно его представлению.
+ */
+public final class FetchPlan {
+
+    public static final FetchPlan NONE = new FetchPlan(List.of());
+
+    private final List<String> attributes;
+
+    private FetchPlan(List<String> attributes) {
+        this.attributes = attributes;
+    }
+
+    /**
+     * @param attributes имена связей; вложенные связи задаются через точку, например "subscriber.services"
+     */
+    public static FetchPlan of(String... attributes) {
+        return new FetchPlan(List.of(attributes));
+    }
+
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    public boolean isEmpty() {
+        return attributes.isEmpty();
+    }
+}
@@ -4,9 +4,20 @@ import org.example.entity.Invoice;
 import java.util.List;
 
 public interface InvoiceDao {
-    List<Invoice> findBySubscriberId(int subscriberId);
+    FetchPlan WITH_SUBSCRIBER = FetchPlan.of("subscriber");
+
+    List<Invoice> findBySubscriberId(int subscriberId, FetchPlan plan);
     boolean pay(int invoiceId);
     Integer findSubscriberIdByInvoiceId(int invoiceId);
-    List<Invoice> findUnpaid();
+    List<Invoice> findUnpaid(FetchPlan plan);
+    ResultStream<Invoice> streamUnpaid(FetchPlan plan, int fetchSize);
     Invoice add(Invoice invoice);
+
+    default List<Invoice> findBySubscriberId(int subscriberId) {
+        return findBySubscriberId(subscriberId, FetchPlan.NONE);
+    }
+
+    default List<Invoice> findUnpaid() {
+        return findUnpaid(FetchPlan.NONE);
+    }
 }
\ No newline at end of file
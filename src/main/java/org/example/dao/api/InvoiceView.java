@@ -0,0 +1,30 @@
+package org.example.dao.api;
+
+import java.time.LocalDate;
+
+/**
+ * Строка счета для отображения. Создается конструкторным выражением JPQL (SELECT NEW ...),
+ * поэтому сигнатура конструктора должна совпадать с порядком колонок запроса.
+ */
+public class InvoiceView {
+
+    private final int id;
+    private final double amount;
+    private final LocalDate issueDate;
+    private final boolean paid;
+
+    public InvoiceView(int id, double amount, LocalDate issueDate, boolean paid) {
+        this.id = id;
+        this.amount = amount;
+        this.issueDate = issueDate;
+        this.paid = paid;
+    }
+
+    public int getId() { return id; }
+
+    public double getAmount() { return amount; }
+
+    public LocalDate getIssueDate() { return issueDate; }
+
+    public boolean isPaid() { return paid; }
+}
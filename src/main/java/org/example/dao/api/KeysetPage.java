@@ -0,0 +1,39 @@
+package org.example.dao.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Страница результатов keyset-пагинации.
+ * Курсоры непрозрачны для вызывающего кода и передаются обратно в DAO как есть.
+ */
+public class KeysetPage<T> {
+
+    private final List<T> items;
+    private final boolean hasNext;
+    private final boolean hasPrevious;
+    private final String nextCursor;
+    private final String previousCursor;
+
+    public KeysetPage(List<T> items, boolean hasNext, boolean hasPrevious, String nextCursor, String previousCursor) {
+        // Именно ArrayList: Thymeleaf разрешает вызывать методы (isEmpty, size) только у коллекций из белого списка,
+        // и неизменяемые списки List.copyOf в него не входят
+        this.items = new ArrayList<>(items);
+        this.hasNext = hasNext;
+        this.hasPrevious = hasPrevious;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    public List<T> getItems() { return items; }
+
+    public boolean isEmpty() { return items.isEmpty(); }
+
+    public boolean isHasNext() { return hasNext; }
+
+    public boolean isHasPrevious() { return hasPrevious; }
+
+    public String getNextCursor() { return nextCursor; }
+
+    public String getPreviousCursor() { return previousCursor; }
+}
@@ -0,0 +1,13 @@
+package org.example.dao.api;
+
+import java.util.Iterator;
+
+/**
+ * Однопроходный поток результатов запроса поверх открытого курсора БД.
+ * Строки читаются по мере обхода, поэтому поток обязательно нужно закрыть.
+ */
+public interface ResultStream<T> extends Iterator<T>, AutoCloseable {
+
+    @Override
+    void close();
+}
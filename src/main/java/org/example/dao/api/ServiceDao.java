@@ -8,5 +8,9 @@ public interface ServiceDao {
     List<Service> findBySubscriberId(int subscriberId);
     void linkServiceToSubscriber(int subscriberId, int serviceId);
     Service add(Service service);
+    void updateMonthlyFee(int serviceId, double monthlyFee);
     void deleteAll();
+
+    CacheStats getCatalogCacheStats();
+    void evictCatalogCache();
 }
\ No newline at end of file
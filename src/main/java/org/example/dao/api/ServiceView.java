@@ -0,0 +1,23 @@
+package org.example.dao.api;
+
+/**
+ * Услуга в том виде, в каком она показывается на страницах: только колонки, без связей.
+ */
+public class ServiceView {
+
+    private final int id;
+    private final String name;
+    private final double monthlyFee;
+
+    public ServiceView(int id, String name, double monthlyFee) {
+        this.id = id;
+        this.name = name;
+        this.monthlyFee = monthlyFee;
+    }
+
+    public int getId() { return id; }
+
+    public String getName() { return name; }
+
+    public double getMonthlyFee() { return monthlyFee; }
+}
@@ -2,14 +2,26 @@ package org.example.dao.api;
 
 import jakarta.persistence.EntityManager;
 import org.example.entity.Subscriber;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
 
 public interface SubscriberDao {
     Subscriber findById(int id);
+
+    /**
+     * Данные страницы абонента двумя SQL-запросами без загрузки сущностей.
+     * @return null, если абонента нет
+     */
+    SubscriberDetailsView findDetails(int id);
+
     List<Subscriber> findAll();
+    KeysetPage<Subscriber> findPage(SubscriberSort sort, String cursor, boolean backward, int pageSize);
     void block(int subscriberId);
     Subscriber add(Subscriber subscriber);
+    void addAll(List<Subscriber> subscribers);
+    Set<String> findExistingPhones(Collection<String> phones);
     void deleteAll();
     void runInTransaction(Consumer<EntityManager> block);
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package org.example.dao.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Неизменяемая модель страницы абонента: шапка, подключенные услуги и счета с итогами.
+ * Итоги считаются один раз при создании, а не в шаблоне. Списки отдаются копиями:
+ * ArrayList доступен выражениям шаблонов, а собственные списки модели не меняются.
+ */
+public class SubscriberDetailsView {
+
+    private final int id;
+    private final String name;
+    private final String phoneNumber;
+    private final double balance;
+    private final boolean blocked;
+    private final List<ServiceView> services;
+    private final List<InvoiceView> invoices;
+    private final double monthlyFeeTotal;
+    private final double invoicedTotal;
+    private final double unpaidTotal;
+    private final int unpaidCount;
+
+    public SubscriberDetailsView(int id, String name, String phoneNumber, double balance, boolean blocked,
+                                 List<ServiceView> services, List<InvoiceView> invoices) {
+        this.id = id;
+        this.name = name;
+        this.phoneNumber = phoneNumber;
+        this.balance = balance;
+        this.blocked = blocked;
+        this.services = new ArrayList<>(services);
+        this.invoices = new ArrayList<>(invoices);
+
+        double fees = 0;
+        for (ServiceView service : services) {
+            fees += service.getMonthlyFee();
+        }
+        double invoiced = 0;
+        double unpaid = 0;
+        int unpaidInvoices = 0;
+        for (InvoiceView invoice : invoices) {
+            invoiced += invoice.getAmount();
+            if (!invoice.isPaid()) {
+                unpaid += invoice.getAmount();
+                unpaidInvoices++;
+            }
+        }
+        this.monthlyFeeTotal = fees;
+        this.invoicedTotal = invoiced;
+        this.unpaidTotal = unpaid;
+        this.unpaidCount = unpaidInvoices;
+    }
+
+    public int getId() { return id; }
+
+    public String getName() { return name; }
+
+    public String getPhoneNumber() { return phoneNumber; }
+
+    public double getBalance() { return balance; }
+
+    public boolean isBlocked() { return blocked; }
+
+    public List<ServiceView> getServices() { return new ArrayList<>(services); }
+
+    public List<InvoiceView> getInvoices() { return new ArrayList<>(invoices); }
+
+    public double getMonthlyFeeTotal() { return monthlyFeeTotal; }
+
+    public double getInvoicedTotal() { return invoicedTotal; }
+
+    public double getUnpaidTotal() { return unpaidTotal; }
+
+    public int getUnpaidCount() { return unpaidCount; }
+}
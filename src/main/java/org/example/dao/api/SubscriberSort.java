@@ -0,0 +1,36 @@
+package org.example.dao.api;
+
+/**
+ * Допустимые варианты сортировки списка абонентов.
+ * Вторичный ключ сортировки всегда id, поэтому порядок строк однозначен.
+ */
+public enum SubscriberSort {
+    ID("id"),
+    NAME("name"),
+    BALANCE("balance");
+
+    private final String attribute;
+
+    SubscriberSort(String attribute) {
+        this.attribute = attribute;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    public String getParam() {
+        return name().toLowerCase();
+    }
+
+    public static SubscriberSort fromParam(String value) {
+        if (value != null) {
+            for (SubscriberSort sort : values()) {
+                if (sort.getParam().equalsIgnoreCase(value)) {
+                    return sort;
+                }
+            }
+        }
+        return ID;
+    }
+}
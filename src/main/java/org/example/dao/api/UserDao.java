@@ -5,4 +5,5 @@ import org.example.entity.User;
 public interface UserDao {
     User add(User user);
     User findByLogin(String login);
+    void updatePassword(int userId, String encodedPassword);
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package org.example.dao.impl;
+
+import org.example.dao.api.BillingDao;
+import org.example.db.DataVersions;
+import org.example.db.UnitOfWork;
+import org.example.entity.Invoice;
+import org.example.entity.Subscriber;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BillingDaoImpl implements BillingDao {
+
+    private static final int FLUSH_SIZE = 500;
+
+    @Override
+    public int[] findSubscriberIdRange() {
+        return UnitOfWork.read("Ошибка при определении диапазона абонентов.", em -> {
+            Object[] row = em.createQuery("SELECT MIN(s.id), MAX(s.id) FROM Subscriber s", Object[].class)
+                    .getSingleResult();
+            if (row[0] == null) {
+                return null;
+            }
+            return new int[]{((Number) row[0]).intValue(), ((Number) row[1]).intValue()};
+        });
+    }
+
+    @Override
+    public int billRange(int fromId, int toId, String period, LocalDate issueDate) {
+        // Вызывается из потоков ForkJoinPool вне HTTP-запроса: каждая партиция получает свой EntityManager
+        int billed = UnitOfWork.write(em -> {
+            // Сумма абонентской платы считается в БД по таблице subscriber_services;
+            // абоненты, уже получившие счет за период, отсекаются здесь же - повторный запуск ничего не дублирует
+            List<Object[]> charges = em.createQuery(
+                            "SELECT s.id, SUM(sv.monthlyFee) FROM Subscriber s JOIN s.services sv " +
+                                    "WHERE s.id BETWEEN :fromId AND :toId " +
+                                    "AND NOT EXISTS (SELECT i.id FROM Invoice i " +
+                                    "WHERE i.subscriber = s AND i.billingPeriod = :period) " +
+                                    "GROUP BY s.id", Object[].class)
+                    .setParameter("fromId", fromId)
+                    .setParameter("toId", toId)
+                    .setParameter("period", period)
+                    .getResultList();
+            if (charges.isEmpty()) {
+                return 0;
+            }
+
+            List<Integer> ids = new ArrayList<>(charges.size());
+            for (Object[] row : charges) {
+                ids.add(((Number) row[0]).intValue());
+            }
+            // Ссылки на абонентов одним запросом: без weaving getReference() делал бы SELECT на каждого
+            Map<Integer, Subscriber> subscribers = new HashMap<>();
+            for (Subscriber s : em.createQuery("SELECT s FROM Subscriber s WHERE s.id IN :ids", Subscriber.class)
+                    .setParameter("ids", ids)
+                    .getResultList()) {
+                subscribers.put(s.getId(), s);
+            }
+
+            int created = 0;
+            for (Object[] row : charges) {
+                Subscriber subscriber = subscribers.get(((Number) row[0]).intValue());
+                double amount = ((Number) row[1]).doubleValue();
+                if (subscriber == null || amount <= 0) {
+                    continue;
+                }
+                Invoice invoice = new Invoice(amount, issueDate, false, subscriber);
+                invoice.setBillingPeriod(period);
+                em.persist(invoice);
+                if (++created % FLUSH_SIZE == 0) {
+                    em.flush();
+                }
+            }
+            return created;
+        });
+        if (billed > 0) {
+            DataVersions.bump(DataVersions.Table.INVOICES);
+            DataVersions.bumpAllSubscribers();
+        }
+        return billed;
+    }
+}
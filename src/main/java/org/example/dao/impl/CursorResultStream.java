@@ -0,0 +1,68 @@
+package org.example.dao.impl;
+
+import jakarta.persistence.EntityManager;
+import org.eclipse.persistence.queries.ScrollableCursor;
+import org.example.dao.api.ResultStream;
+import org.example.db.UnitOfWork;
+import org.example.exception.DataAccessException;
+
+import java.util.NoSuchElementException;
+
+/**
+ * ResultStream на основе forward-only ScrollableCursor EclipseLink.
+ * Отпускает EntityManager вместе с курсором: собственный закрывается, EntityManager запроса остается открытым.
+ */
+class CursorResultStream<T> implements ResultStream<T> {
+
+    private final EntityManager em;
+    private final ScrollableCursor cursor;
+    private final Class<T> type;
+    private final int clearInterval;
+    private int read;
+    private boolean closed;
+
+    CursorResultStream(EntityManager em, ScrollableCursor cursor, Class<T> type, int clearInterval) {
+        this.em = em;
+        this.cursor = cursor;
+        this.type = type;
+        this.clearInterval = clearInterval;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            return cursor.hasNext();
+        } catch (RuntimeException e) {
+            close();
+            throw new DataAccessException("Ошибка чтения курсора.", e);
+        }
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        // Периодически отпускаем уже отданные строки, чтобы память не росла с размером выборки
+        if (clearInterval > 0 && ++read % clearInterval == 0) {
+            em.clear();
+        }
+        return type.cast(cursor.next());
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            cursor.close();
+        } finally {
+            UnitOfWork.release(em);
+        }
+    }
+}
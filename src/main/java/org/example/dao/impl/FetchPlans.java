@@ -0,0 +1,46 @@
+package org.example.dao.impl;
+
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.FetchParent;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+import org.example.dao.api.FetchPlan;
+
+final class FetchPlans {
+
+    private FetchPlans() {
+    }
+
+    /**
+     * Добавляет в запрос LEFT JOIN FETCH для каждой связи плана.
+     * Если загружается коллекция, включает DISTINCT, чтобы корневые сущности не дублировались.
+     */
+    static void apply(CriteriaQuery<?> cq, Root<?> root, FetchPlan plan) {
+        boolean fetchesCollection = false;
+        for (String path : plan.getAttributes()) {
+            FetchParent<?, ?> parent = root;
+            ManagedType<?> type = root.getModel();
+            for (String name : path.split("\\.")) {
+                Attribute<?, ?> attribute = type.getAttribute(name);
+                fetchesCollection |= attribute.isCollection();
+                parent = parent.fetch(name, JoinType.LEFT);
+                type = targetType(attribute);
+            }
+        }
+        if (fetchesCollection) {
+            cq.distinct(true);
+        }
+    }
+
+    private static ManagedType<?> targetType(Attribute<?, ?> attribute) {
+        Type<?> target = attribute instanceof PluralAttribute
+                ? ((PluralAttribute<?, ?, ?>) attribute).getElementType()
+                : ((SingularAttribute<?, ?>) attribute).getType();
+        return target instanceof ManagedType ? (ManagedType<?>) target : null;
+    }
+}
@@ -2,66 +2,46 @@ package org.example.dao.impl;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceException;
+import jakarta.persistence.Query;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.CriteriaUpdate;
 import jakarta.persistence.criteria.Root;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.config.ResultSetConcurrency;
+import org.eclipse.persistence.config.ResultSetType;
+import org.eclipse.persistence.queries.ScrollableCursor;
+import org.example.dao.api.FetchPlan;
 import org.example.dao.api.InvoiceDao;
-import org.example.db.JpaManager;
+import org.example.dao.api.ResultStream;
+import org.example.db.DataVersions;
+import org.example.db.UnitOfWork;
 import org.example.entity.Invoice;
 import org.example.exception.DataAccessException;
 import org.example.exception.EntryNotFoundException;
 
 import java.util.List;
-import java.util.function.Function;
 
 public class InvoiceDaoImpl implements InvoiceDao {
 
-    private <T> T executeInTransaction(Function<EntityManager, T> block) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
-            em.getTransaction().begin();
-            T result = block.apply(em);
-            em.getTransaction().commit();
-            return result;
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
-            }
-            if (e instanceof PersistenceException) {
-                throw new DataAccessException("Ошибка доступа к данным JPA.", e);
-            } else if (e instanceof RuntimeException) {
-                throw (RuntimeException) e;
-            } else {
-                throw new RuntimeException(e);
-            }
-        } finally {
-            em.close();
-        }
-    }
-
     @Override
-    public List<Invoice> findBySubscriberId(int subscriberId) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
+    public List<Invoice> findBySubscriberId(int subscriberId, FetchPlan plan) {
+        return UnitOfWork.read("Ошибка при поиске счетов абонента.", em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Invoice> cq = cb.createQuery(Invoice.class);
             Root<Invoice> root = cq.from(Invoice.class);
+            FetchPlans.apply(cq, root, plan);
 
             cq.where(cb.equal(root.get("subscriber").get("id"), subscriberId));
 
-            return new java.util.ArrayList<>(em.createQuery(cq).getResultList());
-
-        } catch (Exception e) {
-            throw new DataAccessException("Ошибка при поиске счетов абонента.", e);
-        } finally {
-            em.close();
-        }
+            return new java.util.ArrayList<>(UnitOfWork.readOnly(em.createQuery(cq)).getResultList());
+        });
     }
 
     @Override
     public boolean pay(int invoiceId) {
-        return executeInTransaction(em -> {
+        int subscriberId = UnitOfWork.write(em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaUpdate<Invoice> cu = cb.createCriteriaUpdate(Invoice.class);
             Root<Invoice> root = cu.from(Invoice.class);
@@ -74,14 +54,19 @@ public class InvoiceDaoImpl implements InvoiceDao {
             if (rowsAffected == 0) {
                 throw new EntryNotFoundException("Счет с ID " + invoiceId + " не найден.");
             }
-            return true;
+            // Владелец счета нужен, чтобы сменить штамп только его страницы
+            return em.createQuery("SELECT i.subscriber.id FROM Invoice i WHERE i.id = :id", Integer.class)
+                    .setParameter("id", invoiceId)
+                    .getSingleResult();
         });
+        DataVersions.bump(DataVersions.Table.INVOICES);
+        DataVersions.bumpSubscriber(subscriberId);
+        return true;
     }
 
     @Override
     public Integer findSubscriberIdByInvoiceId(int invoiceId) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
+        return UnitOfWork.read("Ошибка при поиске счета.", em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Integer> cq = cb.createQuery(Integer.class);
             Root<Invoice> root = cq.from(Invoice.class);
@@ -89,39 +74,63 @@ public class InvoiceDaoImpl implements InvoiceDao {
             cq.select(root.get("subscriber").get("id"));
             cq.where(cb.equal(root.get("id"), invoiceId));
 
-            return em.createQuery(cq).getSingleResult();
-
-        } catch (jakarta.persistence.NoResultException e) {
-            throw new EntryNotFoundException("Счет с ID " + invoiceId + " не найден.", e);
-        } catch (Exception e) {
-            throw new DataAccessException("Ошибка при поиске счета.", e);
-        } finally {
-            em.close();
-        }
+            try {
+                return em.createQuery(cq).getSingleResult();
+            } catch (jakarta.persistence.NoResultException e) {
+                throw new EntryNotFoundException("Счет с ID " + invoiceId + " не найден.", e);
+            }
+        });
     }
 
     @Override
-    public List<Invoice> findUnpaid() {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
+    public List<Invoice> findUnpaid(FetchPlan plan) {
+        return UnitOfWork.read("Ошибка при получении списка неоплаченных счетов.", em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Invoice> cq = cb.createQuery(Invoice.class);
             Root<Invoice> root = cq.from(Invoice.class);
+            FetchPlans.apply(cq, root, plan);
 
             cq.where(cb.equal(root.get("isPaid"), false));
 
-            return new java.util.ArrayList<>(em.createQuery(cq).getResultList());
+            return new java.util.ArrayList<>(UnitOfWork.readOnly(em.createQuery(cq)).getResultList());
+        });
+    }
 
+    @Override
+    public ResultStream<Invoice> streamUnpaid(FetchPlan plan, int fetchSize) {
+        // Курсор живет дольше вызова DAO, поэтому EntityManager отпускает сам поток при закрытии
+        EntityManager em = UnitOfWork.acquire();
+        try {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Invoice> cq = cb.createQuery(Invoice.class);
+            Root<Invoice> root = cq.from(Invoice.class);
+            FetchPlans.apply(cq, root, plan);
+
+            cq.where(cb.equal(root.get("isPaid"), false));
+            cq.orderBy(cb.asc(root.get("id")));
+
+            // Forward-only курсор с ограниченным fetch size: строки приходят порциями,
+            // а read-only объекты не оседают ни в контексте, ни в общем кэше
+            Query query = em.createQuery(cq);
+            ScrollableCursor cursor = (ScrollableCursor) query
+                    .setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE)
+                    .setHint(QueryHints.RESULT_SET_TYPE, ResultSetType.ForwardOnly)
+                    .setHint(QueryHints.RESULT_SET_CONCURRENCY, ResultSetConcurrency.ReadOnly)
+                    .setHint(QueryHints.JDBC_FETCH_SIZE, fetchSize)
+                    .setHint(QueryHints.READ_ONLY, HintValues.TRUE)
+                    .setHint(QueryHints.MAINTAIN_CACHE, HintValues.FALSE)
+                    .getSingleResult();
+
+            return new CursorResultStream<>(em, cursor, Invoice.class, fetchSize);
         } catch (Exception e) {
-            throw new DataAccessException("Ошибка при получении списка неоплаченных счетов.", e);
-        } finally {
-            em.close();
+            UnitOfWork.release(em);
+            throw new DataAccessException("Ошибка при открытии потока неоплаченных счетов.", e);
         }
     }
 
     @Override
     public Invoice add(Invoice invoice) {
-        return executeInTransaction(em -> {
+        Invoice added = UnitOfWork.write(em -> {
             try {
                 if (invoice.getSubscriber() != null && !em.contains(invoice.getSubscriber())) {
                     invoice.setSubscriber(em.merge(invoice.getSubscriber()));
@@ -132,5 +141,10 @@ public class InvoiceDaoImpl implements InvoiceDao {
                 throw new DataAccessException("Ошибка при добавлении счета.", e);
             }
         });
+        DataVersions.bump(DataVersions.Table.INVOICES);
+        if (added.getSubscriber() != null) {
+            DataVersions.bumpSubscriber(added.getSubscriber().getId());
+        }
+        return added;
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package org.example.dao.impl;
+
+import org.example.dao.api.CacheStats;
+import org.example.entity.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Read-through кэш каталога услуг: неизменяемый снимок, который подменяется атомарно.
+ * Каждый снимок помечен поколением; invalidate() увеличивает поколение, поэтому снимок,
+ * загруженный параллельно с изменением каталога, никогда не будет отдан как актуальный.
+ * Выключенный кэш загружает каталог при каждом обращении: invalidate() узнает только об изменениях
+ * на своем узле, и при нескольких узлах снимок мог бы устареть навсегда.
+ */
+class ServiceCatalogCache {
+
+    private final boolean enabled;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    ServiceCatalogCache(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    List<Service> get(Supplier<List<Service>> loader) {
+        if (!enabled) {
+            misses.increment();
+            return new ArrayList<>(loader.get());
+        }
+        Snapshot current = snapshot.get();
+        if (current != null && current.generation == generation.get()) {
+            hits.increment();
+            // Снимок общий для всех потоков; вызывающий получает свою копию (ArrayList доступен и шаблонам)
+            return new ArrayList<>(current.services);
+        }
+
+        misses.increment();
+        long loadGeneration = generation.get();
+        List<Service> loaded = List.copyOf(loader.get());
+        snapshot.set(new Snapshot(loadGeneration, loaded));
+        return new ArrayList<>(loaded);
+    }
+
+    /**
+     * Вызывается после коммита любой транзакции, меняющей каталог.
+     */
+    void invalidate() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+        invalidations.increment();
+    }
+
+    CacheStats stats() {
+        Snapshot current = snapshot.get();
+        int size = current != null && current.generation == generation.get() ? current.services.size() : 0;
+        return new CacheStats(hits.sum(), misses.sum(), invalidations.sum(), size);
+    }
+
+    private static final class Snapshot {
+        private final long generation;
+        private final List<Service> services;
+
+        private Snapshot(long generation, List<Service> services) {
+            this.generation = generation;
+            this.services = services;
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package org.example.dao.impl;
 
-import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceException;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Root;
+import org.example.dao.api.CacheStats;
 import org.example.dao.api.ServiceDao;
-import org.example.db.JpaManager;
+import org.example.db.DataVersions;
+import org.example.db.UnitOfWork;
 import org.example.entity.Service;
 import org.example.entity.Subscriber;
 import org.example.exception.DataAccessException;
@@ -15,53 +17,41 @@ import org.example.exception.DuplicateEntryException;
 import org.example.exception.EntryNotFoundException;
 
 import java.util.List;
-import java.util.function.Function;
 
 public class ServiceDaoImpl implements ServiceDao {
 
-    private <T> T executeInTransaction(Function<EntityManager, T> block) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
-            em.getTransaction().begin();
-            T result = block.apply(em);
-            em.getTransaction().commit();
-            return result;
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
-            }
-            if (e instanceof PersistenceException) {
-                throw new DataAccessException("Ошибка доступа к данным JPA.", e);
-            } else if (e instanceof RuntimeException) {
-                throw (RuntimeException) e;
-            } else {
-                throw new RuntimeException(e);
-            }
-        } finally {
-            em.close();
-        }
+    private final ServiceCatalogCache catalogCache;
+
+    public ServiceDaoImpl() {
+        this(true);
+    }
+
+    /**
+     * @param cacheCatalog false - каталог читается из БД при каждом обращении (несколько узлов)
+     */
+    public ServiceDaoImpl(boolean cacheCatalog) {
+        this.catalogCache = new ServiceCatalogCache(cacheCatalog);
     }
 
     @Override
     public List<Service> findAll() {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
+        return catalogCache.get(this::loadAll);
+    }
+
+    private List<Service> loadAll() {
+        return UnitOfWork.read("Ошибка при получении списка услуг", em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Service> cq = cb.createQuery(Service.class);
             Root<Service> root = cq.from(Service.class);
             cq.select(root);
-            return new java.util.ArrayList<>(em.createQuery(cq).getResultList());
-        } catch (Exception e) {
-            throw new DataAccessException("Ошибка при получении списка услуг", e);
-        } finally {
-            em.close();
-        }
+            // Каталог разделяется между запросами через кэш, поэтому берем read-only экземпляры
+            return new java.util.ArrayList<>(UnitOfWork.readOnly(em.createQuery(cq)).getResultList());
+        });
     }
 
     @Override
     public List<Service> findBySubscriberId(int subscriberId) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
+        return UnitOfWork.read("Ошибка при поиске услуг абонента.", em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Service> cq = cb.createQuery(Service.class);
             Root<Service> root = cq.from(Service.class);
@@ -69,18 +59,13 @@ public class ServiceDaoImpl implements ServiceDao {
             Join<Service, Subscriber> subscribersJoin = root.join("subscribers");
             cq.where(cb.equal(subscribersJoin.get("id"), subscriberId));
 
-            return new java.util.ArrayList<>(em.createQuery(cq).getResultList());
-
-        } catch (Exception e) {
-            throw new DataAccessException("Ошибка при поиске услуг абонента.", e);
-        } finally {
-            em.close();
-        }
+            return new java.util.ArrayList<>(UnitOfWork.readOnly(em.createQuery(cq)).getResultList());
+        });
     }
 
     @Override
     public Service add(Service service) {
-        return executeInTransaction(em -> {
+        Service added = UnitOfWork.write(em -> {
             try {
                 em.persist(service);
                 return service;
@@ -88,11 +73,33 @@ public class ServiceDaoImpl implements ServiceDao {
                 throw new DataAccessException("Ошибка при добавлении услуги.", e);
             }
         });
+        catalogCache.invalidate();
+        DataVersions.bump(DataVersions.Table.SERVICES);
+        return added;
+    }
+
+    @Override
+    public void updateMonthlyFee(int serviceId, double monthlyFee) {
+        UnitOfWork.write(em -> {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaUpdate<Service> cu = cb.createCriteriaUpdate(Service.class);
+            Root<Service> root = cu.from(Service.class);
+
+            cu.set(root.get("monthlyFee"), monthlyFee);
+            cu.where(cb.equal(root.get("id"), serviceId));
+
+            if (em.createQuery(cu).executeUpdate() == 0) {
+                throw new EntryNotFoundException("Услуга с ID " + serviceId + " не найдена.");
+            }
+            return null;
+        });
+        catalogCache.invalidate();
+        DataVersions.bump(DataVersions.Table.SERVICES);
     }
 
     @Override
     public void linkServiceToSubscriber(int subscriberId, int serviceId) {
-        executeInTransaction(em -> {
+        UnitOfWork.write(em -> {
             try {
                 Subscriber subscriber = em.find(Subscriber.class, subscriberId);
                 Service service = em.find(Service.class, serviceId);
@@ -117,11 +124,13 @@ public class ServiceDaoImpl implements ServiceDao {
                 throw new DataAccessException("Ошибка при подключении услуги.", e);
             }
         });
+        DataVersions.bump(DataVersions.Table.SUBSCRIPTIONS);
+        DataVersions.bumpSubscriber(subscriberId);
     }
 
     @Override
     public void deleteAll() {
-        executeInTransaction(em -> {
+        UnitOfWork.write(em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Service> cq = cb.createQuery(Service.class);
             Root<Service> root = cq.from(Service.class);
@@ -133,5 +142,18 @@ public class ServiceDaoImpl implements ServiceDao {
             }
             return null;
         });
+        catalogCache.invalidate();
+        DataVersions.bump(DataVersions.Table.SERVICES);
+    }
+
+    @Override
+    public CacheStats getCatalogCacheStats() {
+        return catalogCache.stats();
+    }
+
+    @Override
+    public void evictCatalogCache() {
+        catalogCache.invalidate();
+        DataVersions.bump(DataVersions.Table.SERVICES);
     }
 }
\ No newline at end of file
@@ -5,87 +5,194 @@ import jakarta.persistence.PersistenceException;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import org.example.dao.api.InvoiceView;
+import org.example.dao.api.KeysetPage;
+import org.example.dao.api.ServiceView;
 import org.example.dao.api.SubscriberDao;
-import org.example.db.JpaManager;
+import org.example.dao.api.SubscriberDetailsView;
+import org.example.dao.api.SubscriberSort;
+import org.example.db.DataVersions;
+import org.example.db.UnitOfWork;
 import org.example.entity.Subscriber;
 import org.example.exception.DataAccessException;
 import org.example.exception.DuplicateEntryException;
 import org.example.exception.EntryNotFoundException;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 public class SubscriberDaoImpl implements SubscriberDao {
 
-    private <T> T executeInTransaction(Function<EntityManager, T> block) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
-            em.getTransaction().begin();
-            T result = block.apply(em);
-            em.getTransaction().commit();
-            return result;
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
-            }
-            if (e instanceof PersistenceException) {
-                throw new DataAccessException("Ошибка доступа к данным JPA.", e);
-            }
-            throw new RuntimeException(e);
-        } finally {
-            em.close();
-        }
+    @Override
+    public Subscriber findById(int id) {
+        return UnitOfWork.read("Ошибка при поиске абонента.", em -> em.find(Subscriber.class, id));
     }
 
-    private void executeInTransaction(Consumer<EntityManager> block) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
-            em.getTransaction().begin();
-            block.accept(em);
-            em.getTransaction().commit();
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
+    @Override
+    public SubscriberDetailsView findDetails(int id) {
+        return UnitOfWork.read("Ошибка при загрузке данных абонента.", em -> {
+            // Шапка и услуги одним запросом: строка на каждую услугу или одна строка с NULL, если услуг нет
+            List<Object[]> rows = em.createQuery(
+                            "SELECT s.id, s.name, s.phoneNumber, s.balance, s.isBlocked, sv.id, sv.name, sv.monthlyFee " +
+                                    "FROM Subscriber s LEFT JOIN s.services sv WHERE s.id = :id ORDER BY sv.id",
+                            Object[].class)
+                    .setParameter("id", id)
+                    .getResultList();
+            if (rows.isEmpty()) {
+                return null;
             }
-            throw new RuntimeException(e);
-        } finally {
-            em.close();
-        }
-    }
 
-    @Override
-    public Subscriber findById(int id) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
-            return em.find(Subscriber.class, id);
-        } catch (Exception e) {
-            throw new DataAccessException("Ошибка при поиске абонента.", e);
-        } finally {
-            em.close();
-        }
+            List<ServiceView> services = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                if (row[5] != null) {
+                    services.add(new ServiceView(((Number) row[5]).intValue(), (String) row[6],
+                            ((Number) row[7]).doubleValue()));
+                }
+            }
+
+            List<InvoiceView> invoices = em.createQuery(
+                            "SELECT NEW org.example.dao.api.InvoiceView(i.id, i.amount, i.issueDate, i.isPaid) " +
+                                    "FROM Invoice i WHERE i.subscriber.id = :id ORDER BY i.id", InvoiceView.class)
+                    .setParameter("id", id)
+                    .getResultList();
+
+            Object[] head = rows.get(0);
+            return new SubscriberDetailsView(((Number) head[0]).intValue(), (String) head[1], (String) head[2],
+                    ((Number) head[3]).doubleValue(), Boolean.TRUE.equals(head[4]), services, invoices);
+        });
     }
 
     @Override
     public List<Subscriber> findAll() {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
+        return UnitOfWork.read("Ошибка при получении списка абонентов.", em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Subscriber> cq = cb.createQuery(Subscriber.class);
             Root<Subscriber> root = cq.from(Subscriber.class);
             cq.select(root);
-            return new java.util.ArrayList<>(em.createQuery(cq).getResultList());
-        } catch (Exception e) {
-            throw new DataAccessException("Ошибка при получении списка абонентов.", e);
-        } finally {
-            em.close();
+            return new java.util.ArrayList<>(UnitOfWork.readOnly(em.createQuery(cq)).getResultList());
+        });
+    }
+
+    @Override
+    public KeysetPage<Subscriber> findPage(SubscriberSort sort, String cursor, boolean backward, int pageSize) {
+        return UnitOfWork.read("Ошибка при получении страницы абонентов.", em -> {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Subscriber> cq = cb.createQuery(Subscriber.class);
+            Root<Subscriber> root = cq.from(Subscriber.class);
+            Path<Integer> id = root.get("id");
+
+            Subscriber key = decodeCursor(sort, cursor);
+            if (key != null) {
+                cq.where(seekPredicate(cb, root, sort, key, backward));
+            }
+
+            if (sort == SubscriberSort.ID) {
+                cq.orderBy(backward ? cb.desc(id) : cb.asc(id));
+            } else {
+                Path<?> column = root.get(sort.getAttribute());
+                cq.orderBy(backward ? cb.desc(column) : cb.asc(column), backward ? cb.desc(id) : cb.asc(id));
+            }
+
+            // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница
+            List<Subscriber> rows = new ArrayList<>(UnitOfWork.readOnly(em.createQuery(cq))
+                    .setMaxResults(pageSize + 1)
+                    .getResultList());
+
+            boolean hasMore = rows.size() > pageSize;
+            if (hasMore) {
+                rows.remove(rows.size() - 1);
+            }
+            if (backward) {
+                Collections.reverse(rows);
+            }
+
+            boolean hasNext = backward ? key != null : hasMore;
+            boolean hasPrevious = backward ? hasMore : key != null;
+            String next = hasNext && !rows.isEmpty() ? encodeCursor(sort, rows.get(rows.size() - 1)) : null;
+            String previous = hasPrevious && !rows.isEmpty() ? encodeCursor(sort, rows.get(0)) : null;
+
+            return new KeysetPage<>(rows, hasNext, hasPrevious, next, previous);
+        });
+    }
+
+    private Predicate seekPredicate(CriteriaBuilder cb, Root<Subscriber> root, SubscriberSort sort,
+                                    Subscriber key, boolean backward) {
+        Path<Integer> id = root.get("id");
+        switch (sort) {
+            case NAME:
+                return seek(cb, root.get("name"), key.getName(), id, key.getId(), backward);
+            case BALANCE:
+                return seek(cb, root.get("balance"), key.getBalance(), id, key.getId(), backward);
+            default:
+                return backward ? cb.lessThan(id, key.getId()) : cb.greaterThan(id, key.getId());
+        }
+    }
+
+    /**
+     * (column, id) > (value, lastId) в развернутом виде, который понимают все СУБД
+     * и который использует составной индекс (column, id).
+     */
+    private <Y extends Comparable<? super Y>> Predicate seek(CriteriaBuilder cb, Path<Y> column, Y value,
+                                                            Path<Integer> id, int lastId, boolean backward) {
+        if (backward) {
+            return cb.or(cb.lessThan(column, value),
+                    cb.and(cb.equal(column, value), cb.lessThan(id, lastId)));
+        }
+        return cb.or(cb.greaterThan(column, value),
+                cb.and(cb.equal(column, value), cb.greaterThan(id, lastId)));
+    }
+
+    private String encodeCursor(SubscriberSort sort, Subscriber subscriber) {
+        String value;
+        switch (sort) {
+            case NAME:
+                value = subscriber.getName();
+                break;
+            case BALANCE:
+                value = String.valueOf(subscriber.getBalance());
+                break;
+            default:
+                value = "";
+        }
+        String raw = subscriber.getId() + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Subscriber decodeCursor(SubscriberSort sort, String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf(':');
+            Subscriber key = new Subscriber();
+            key.setId(Integer.parseInt(raw.substring(0, sep)));
+            String value = raw.substring(sep + 1);
+            if (sort == SubscriberSort.NAME) {
+                key.setName(value);
+            } else if (sort == SubscriberSort.BALANCE) {
+                key.setBalance(Double.parseDouble(value));
+            }
+            return key;
+        } catch (RuntimeException e) {
+            // Поврежденный курсор - просто начинаем с первой страницы
+            return null;
         }
     }
 
     @Override
     public void block(int subscriberId) {
-        executeInTransaction(em -> {
+        UnitOfWork.write(em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaUpdate<Subscriber> cu = cb.createCriteriaUpdate(Subscriber.class);
             Root<Subscriber> root = cu.from(Subscriber.class);
@@ -97,12 +204,15 @@ public class SubscriberDaoImpl implements SubscriberDao {
             if (rowsAffected == 0) {
                 throw new EntryNotFoundException("Абонент с ID " + subscriberId + " не найден.");
             }
+            return null;
         });
+        DataVersions.bump(DataVersions.Table.SUBSCRIBERS);
+        DataVersions.bumpSubscriber(subscriberId);
     }
 
     @Override
     public Subscriber add(Subscriber subscriber) {
-        return executeInTransaction(em -> {
+        Subscriber added = UnitOfWork.write(em -> {
             try {
                 em.persist(subscriber);
                 return subscriber;
@@ -113,11 +223,52 @@ public class SubscriberDaoImpl implements SubscriberDao {
                 throw new DataAccessException("Ошибка при добавлении абонента.", e);
             }
         });
+        DataVersions.bump(DataVersions.Table.SUBSCRIBERS);
+        return added;
+    }
+
+    @Override
+    public void addAll(List<Subscriber> subscribers) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        // Все INSERT одной транзакции уходят JDBC-пачками (eclipselink.jdbc.batch-writing);
+        // после коммита пакета абоненты отсоединяются, чтобы импорт не копил их в EntityManager запроса
+        UnitOfWork.writeBatch(em -> {
+            try {
+                for (Subscriber subscriber : subscribers) {
+                    em.persist(subscriber);
+                }
+                em.flush();
+                return subscribers.size();
+            } catch (PersistenceException e) {
+                if (e.getMessage() != null && e.getMessage().contains("Duplicate entry")) {
+                    throw new DuplicateEntryException("Телефон уже занят.", e);
+                }
+                throw new DataAccessException("Ошибка при пакетном добавлении абонентов.", e);
+            }
+        });
+        DataVersions.bump(DataVersions.Table.SUBSCRIBERS);
+    }
+
+    @Override
+    public Set<String> findExistingPhones(Collection<String> phones) {
+        if (phones.isEmpty()) {
+            return Set.of();
+        }
+        return UnitOfWork.read("Ошибка при проверке телефонов.", em -> {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<String> cq = cb.createQuery(String.class);
+            Root<Subscriber> root = cq.from(Subscriber.class);
+            cq.select(root.get("phoneNumber"));
+            cq.where(root.get("phoneNumber").in(phones));
+            return new HashSet<>(em.createQuery(cq).getResultList());
+        });
     }
 
     @Override
     public void deleteAll() {
-        executeInTransaction(em -> {
+        UnitOfWork.write(em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Subscriber> cq = cb.createQuery(Subscriber.class);
             Root<Subscriber> root = cq.from(Subscriber.class);
@@ -125,11 +276,17 @@ public class SubscriberDaoImpl implements SubscriberDao {
             for (Subscriber subscriber : allSubscribers) {
                 em.remove(subscriber);
             }
+            return null;
         });
+        DataVersions.bumpAll();
     }
 
     @Override
     public void runInTransaction(Consumer<EntityManager> block) {
-        this.executeInTransaction(block);
+        UnitOfWork.write(em -> {
+            block.accept(em);
+            return null;
+        });
+        DataVersions.bumpAll();
     }
 }
\ No newline at end of file
@@ -1,41 +1,18 @@
 package org.example.dao.impl;
 
-import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceException;
 import org.example.dao.api.UserDao;
-import org.example.db.JpaManager;
+import org.example.db.UnitOfWork;
 import org.example.entity.User;
-import org.example.exception.DataAccessException;
 import org.example.exception.DuplicateEntryException;
-
-import java.util.function.Function;
+import org.example.exception.EntryNotFoundException;
 
 public class UserDaoImpl implements UserDao {
 
-    private <T> T executeInTransaction(Function<EntityManager, T> block) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
-            em.getTransaction().begin();
-            T result = block.apply(em);
-            em.getTransaction().commit();
-            return result;
-        } catch (Exception e) {
-            if (em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
-            }
-            if (e instanceof PersistenceException) {
-                throw new DataAccessException("Ошибка доступа к данным JPA.", e);
-            }
-            throw new RuntimeException(e);
-        } finally {
-            em.close();
-        }
-    }
-
     @Override
     public User add(User user) {
-        return executeInTransaction(em -> {
+        return UnitOfWork.write(em -> {
             try {
                 em.persist(user);
                 em.flush();
@@ -52,17 +29,28 @@ public class UserDaoImpl implements UserDao {
 
     @Override
     public User findByLogin(String login) {
-        EntityManager em = JpaManager.getEntityManager();
-        try {
-            return em.createQuery("SELECT u FROM User u WHERE u.login = :login", User.class)
-                    .setParameter("login", login)
-                    .getSingleResult();
-        } catch (NoResultException e) {
+        return UnitOfWork.read("Ошибка поиска пользователя.", em -> {
+            try {
+                return em.createQuery("SELECT u FROM User u WHERE u.login = :login", User.class)
+                        .setParameter("login", login)
+                        .getSingleResult();
+            } catch (NoResultException e) {
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void updatePassword(int userId, String encodedPassword) {
+        UnitOfWork.write(em -> {
+            int rowsAffected = em.createQuery("UPDATE User u SET u.password = :password WHERE u.id = :id")
+                    .setParameter("password", encodedPassword)
+                    .setParameter("id", userId)
+                    .executeUpdate();
+            if (rowsAffected == 0) {
+                throw new EntryNotFoundException("Пользователь с ID " + userId + " не найден.");
+            }
             return null;
-        } catch (Exception e) {
-            throw new DataAccessException("Ошибка поиска пользователя.", e);
-        } finally {
-            em.close();
-        }
+        });
     }
-}
\ No newline at end of file
+}
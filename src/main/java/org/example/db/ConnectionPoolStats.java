@@ -0,0 +1,68 @@
+package org.example.db;
+
+import org.example.metrics.LatencyHistogram;
+
+/**
+ * Мгновенный снимок состояния пула соединений.
+ */
+public class ConnectionPoolStats {
+
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int waiting;
+    private final int maxSize;
+    private final int minIdle;
+    private final long timeouts;
+    private final long connectionsCreated;
+    private final LatencyHistogram acquireLatency;
+    private final LatencyHistogram usageTime;
+
+    ConnectionPoolStats(int active, int idle, int total, int waiting, int maxSize, int minIdle,
+                        PoolMetrics metrics) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.waiting = waiting;
+        this.maxSize = maxSize;
+        this.minIdle = minIdle;
+        this.timeouts = metrics.getTimeouts();
+        this.connectionsCreated = metrics.getConnectionsCreated();
+        this.acquireLatency = metrics.getAcquireLatency();
+        this.usageTime = metrics.getUsageTime();
+    }
+
+    public int getActive() { return active; }
+
+    public int getIdle() { return idle; }
+
+    public int getTotal() { return total; }
+
+    public int getWaiting() { return waiting; }
+
+    public int getMaxSize() { return maxSize; }
+
+    public int getMinIdle() { return minIdle; }
+
+    public long getTimeouts() { return timeouts; }
+
+    public long getConnectionsCreated() { return connectionsCreated; }
+
+    public LatencyHistogram getAcquireLatency() { return acquireLatency; }
+
+    public LatencyHistogram getUsageTime() { return usageTime; }
+
+    @Override
+    public String toString() {
+        return "active=" + active + " idle=" + idle + " total=" + total + " waiting=" + waiting
+                + " max=" + maxSize + " minIdle=" + minIdle + " timeouts=" + timeouts
+                + " acquire.count=" + acquireLatency.getCount()
+                + " acquire.p50=" + micros(acquireLatency.quantileNanos(0.5))
+                + " acquire.p99=" + micros(acquireLatency.quantileNanos(0.99))
+                + " acquire.max=" + micros(acquireLatency.getMaxNanos());
+    }
+
+    private static String micros(long nanos) {
+        return nanos / 1000 + "us";
+    }
+}
@@ -1,48 +1,59 @@
 package org.example.db;
 
-import jakarta.persistence.criteria.CriteriaBuilder;
-import jakarta.persistence.criteria.CriteriaQuery;
-import jakarta.persistence.criteria.Root;
+import jakarta.persistence.EntityManager;
 import org.example.dao.api.InvoiceDao;
 import org.example.dao.api.ServiceDao;
 import org.example.dao.api.SubscriberDao;
 import org.example.dao.api.UserDao;
 import org.example.entity.*;
-import org.example.util.PasswordUtil;
+import org.example.util.Pbkdf2PasswordHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 public class DataInitializer {
-
+    private static final Logger logger = LoggerFactory.getLogger(DataInitializer.class);
+
+    // Абоненты пишутся порциями: каждая порция - своя транзакция, после которой контекст очищается
+    private static final int CHUNK_SIZE = 1000;
+
+    public static final String ADMIN_PASSWORD = "admin";
+
+    private static final String[] FIRST_NAMES = {
+            "Иван", "Петр", "Алексей", "Сергей", "Дмитрий", "Андрей", "Николай", "Михаил",
+            "Анна", "Мария", "Елена", "Ольга", "Наталья", "Татьяна", "Ирина", "Светлана"
+    };
+    private static final String[] LAST_NAMES = {
+            "Иванов", "Петров", "Сидоров", "Смирнов", "Кузнецов", "Попов", "Васильев", "Соколов",
+            "Михайлов", "Новиков", "Федоров", "Морозов", "Волков", "Алексеев", "Лебедев", "Козлов"
+    };
+    private static final String[] OPERATOR_CODES = {"29", "33", "44", "25"};
+    private static final String[] SERVICE_NAMES = {
+            "Интернет", "Мобильная связь", "Телевидение", "Антивирус",
+            "Облачное хранилище", "Роуминг", "Статический IP", "Видеонаблюдение"
+    };
+
+    /**
+     * @param adminPasswordHash хеш пароля "admin", вычисленный тем же хешером, которым приложение
+     *                          проверяет вход (иначе первый вход сразу перехеширует пароль)
+     */
     public static void insertInitialData(
             SubscriberDao subscriberDao,
             ServiceDao serviceDao,
             InvoiceDao invoiceDao,
-            UserDao userDao) {
+            UserDao userDao,
+            String adminPasswordHash) {
 
         try {
-            subscriberDao.runInTransaction(em -> {
-                CriteriaBuilder cb = em.getCriteriaBuilder();
-
-                CriteriaQuery<Invoice> cqInv = cb.createQuery(Invoice.class);
-                cqInv.select(cqInv.from(Invoice.class));
-                for (Invoice i : em.createQuery(cqInv).getResultList()) em.remove(i);
-
-                CriteriaQuery<Subscriber> cqSub = cb.createQuery(Subscriber.class);
-                cqSub.select(cqSub.from(Subscriber.class));
-                for (Subscriber s : em.createQuery(cqSub).getResultList()) em.remove(s);
-
-                CriteriaQuery<Service> cqSrv = cb.createQuery(Service.class);
-                cqSrv.select(cqSrv.from(Service.class));
-                for (Service s : em.createQuery(cqSrv).getResultList()) em.remove(s);
-
-                CriteriaQuery<User> cqUser = cb.createQuery(User.class);
-                cqUser.select(cqUser.from(User.class));
-                for (User u : em.createQuery(cqUser).getResultList()) em.remove(u);
-
-                em.flush();
+            reset();
 
-                User admin = new User("admin", PasswordUtil.hash("admin"), Role.ADMIN);
+            subscriberDao.runInTransaction(em -> {
+                User admin = new User("admin", adminPasswordHash, Role.ADMIN);
                 em.persist(admin);
 
                 Subscriber sub1 = new Subscriber("Иван Иванов", "+375291234567", 150.50, false);
@@ -67,10 +78,147 @@ public class DataInitializer {
                 em.persist(inv1);
                 em.persist(inv2);
             });
+            serviceDao.evictCatalogCache();
 
         } catch (Exception e) {
             e.printStackTrace();
             throw new org.example.exception.DataAccessException("Ошибка при инициализации данных", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Очищает БД и заполняет ее синтетическими данными по спецификации.
+     * Распределения: популярность услуг убывает по степенному закону, у большинства абонентов 1-2 услуги,
+     * около 10% уходят в минус, недавние счета оплачены реже старых.
+     * Счета выставлены за последние месяцы до текущего, по одному на месяц.
+     *
+     * Пароль admin хешируется с числом итераций по умолчанию - для запуска вне приложения
+     * (нагрузочный тест, бенчмарки).
+     *
+     * @return число вставленных строк (абоненты, услуги и счета)
+     */
+    public static long generateDataset(ServiceDao serviceDao, DatasetSpec spec) {
+        return generateDataset(serviceDao, spec, new Pbkdf2PasswordHasher().hash(ADMIN_PASSWORD));
+    }
+
+    /**
+     * @param adminPasswordHash хеш пароля "admin" хешером приложения
+     */
+    public static long generateDataset(ServiceDao serviceDao, DatasetSpec spec, String adminPasswordHash) {
+        long started = System.nanoTime();
+        reset();
+
+        Random random = new Random(spec.getSeed());
+        YearMonth lastPeriod = YearMonth.now().minusMonths(1);
+
+        List<Integer> serviceIds = UnitOfWork.write(em -> {
+            em.persist(new User("admin", adminPasswordHash, Role.ADMIN));
+            List<Service> services = new ArrayList<>(spec.getServices());
+            for (int i = 0; i < spec.getServices(); i++) {
+                String name = SERVICE_NAMES[i % SERVICE_NAMES.length]
+                        + (i < SERVICE_NAMES.length ? "" : " #" + (i / SERVICE_NAMES.length + 1));
+                Service service = new Service(name, 50 + 10 * random.nextInt(96));
+                em.persist(service);
+                services.add(service);
+            }
+            em.flush();
+            List<Integer> ids = new ArrayList<>(services.size());
+            for (Service service : services) {
+                ids.add(service.getId());
+            }
+            return ids;
+        });
+
+        long invoices = 0;
+        for (int from = 0; from < spec.getSubscribers(); from += CHUNK_SIZE) {
+            int chunkFrom = from;
+            int chunkTo = Math.min(spec.getSubscribers(), from + CHUNK_SIZE);
+            invoices += UnitOfWork.write(em -> {
+                // Услуги заново читаются в каждой порции: после clear() прежние экземпляры отсоединены
+                List<Service> services = em.createQuery(
+                                "SELECT s FROM Service s WHERE s.id IN :ids ORDER BY s.id", Service.class)
+                        .setParameter("ids", serviceIds)
+                        .getResultList();
+                int created = 0;
+                for (int i = chunkFrom; i < chunkTo; i++) {
+                    created += persistSubscriber(em, random, i, services, spec.getInvoicesPerSubscriber(), lastPeriod);
+                }
+                em.flush();
+                em.clear();
+                return created;
+            });
+        }
+        serviceDao.evictCatalogCache();
+        DataVersions.bumpAll();
+
+        long rows = spec.getSubscribers() + spec.getServices() + invoices;
+        logger.info("Сгенерирован набор данных ({}): {} строк за {} мс",
+                spec, rows, (System.nanoTime() - started) / 1_000_000);
+        return rows;
+    }
+
+    private static int persistSubscriber(EntityManager em, Random random, int index,
+                                         List<Service> services, int invoiceCount, YearMonth lastPeriod) {
+        String name = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " "
+                + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        // Номер однозначно выводится из порядкового номера абонента - уникальность без проверок в БД
+        String phone = "+375" + OPERATOR_CODES[index % OPERATOR_CODES.length]
+                + String.format("%07d", index / OPERATOR_CODES.length);
+        double balance = round2(150 + 250 * random.nextGaussian());
+        boolean blocked = balance < -200 ? random.nextDouble() < 0.6 : random.nextDouble() < 0.02;
+
+        Subscriber subscriber = new Subscriber(name, phone, balance, blocked);
+        double monthlyFee = 0;
+        int serviceCount = Math.min(services.size(), serviceCount(random));
+        for (int attempt = 0; subscriber.getServices().size() < serviceCount && attempt < serviceCount * 4; attempt++) {
+            Service service = services.get((int) (services.size() * Math.pow(random.nextDouble(), 2.5)));
+            if (subscriber.getServices().add(service)) {
+                monthlyFee += service.getMonthlyFee();
+            }
+        }
+        em.persist(subscriber);
+
+        for (int month = 0; month < invoiceCount; month++) {
+            YearMonth period = lastPeriod.minusMonths(month);
+            double base = monthlyFee > 0 ? monthlyFee : 100;
+            double paidChance = month == 0 ? 0.55 : 0.95;
+            Invoice invoice = new Invoice(round2(base * (0.9 + 0.2 * random.nextDouble())),
+                    period.atDay(1 + random.nextInt(5)), random.nextDouble() < paidChance, subscriber);
+            invoice.setBillingPeriod(period.toString());
+            em.persist(invoice);
+        }
+        return invoiceCount;
+    }
+
+    private static int serviceCount(Random random) {
+        double r = random.nextDouble();
+        if (r < 0.10) return 0;
+        if (r < 0.50) return 1;
+        if (r < 0.80) return 2;
+        if (r < 0.95) return 3;
+        return 4;
+    }
+
+    private static double round2(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * Удаляет все данные набором массовых DELETE вместо загрузки и удаления каждой сущности.
+     */
+    private static void reset() {
+        UnitOfWork.write(em -> {
+            // Таблица связей не является сущностью - чистим ее нативным SQL раньше абонентов и услуг
+            em.createNativeQuery("DELETE FROM subscriber_services").executeUpdate();
+            em.createQuery("DELETE FROM Invoice i").executeUpdate();
+            em.createQuery("DELETE FROM Subscriber s").executeUpdate();
+            em.createQuery("DELETE FROM Service s").executeUpdate();
+            em.createQuery("DELETE FROM User u").executeUpdate();
+            em.clear();
+            return null;
+        });
+        // Массовые DELETE минуют объекты в памяти, поэтому общий кэш сбрасываем целиком
+        JpaManager.emf.getCache().evictAll();
+        DataVersions.bumpAll();
+    }
+}
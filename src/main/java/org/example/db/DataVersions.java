@@ -0,0 +1,77 @@
+package org.example.db;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счетчики версий данных: DAO увеличивают счетчик после каждой записи в соответствующие таблицы.
+ * Версия входит в ключи кэшей вывода, поэтому запись делает устаревшими все закэшированные фрагменты,
+ * построенные по этим данным, без явного поиска и удаления записей.
+ * <p>
+ * Версию нужно читать до загрузки данных: если запись случится между чтением версии и загрузкой,
+ * результат попадет в кэш под уже устаревшей версией и никогда не будет выдан.
+ */
+public final class DataVersions {
+
+    public enum Table {
+        SERVICES, SUBSCRIBERS, SUBSCRIPTIONS, INVOICES
+    }
+
+    private static final AtomicLongArray versions = new AtomicLongArray(Table.values().length);
+
+    /** Штампы абонентов хранятся в фиксированном числе полос: память не растет с числом абонентов. */
+    private static final int SUBSCRIBER_STRIPES = 1024;
+    private static final AtomicLongArray subscriberStamps = new AtomicLongArray(SUBSCRIBER_STRIPES);
+
+    /** Счетчики живут в памяти процесса: после перезапуска старые значения снова станут нулями. */
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private DataVersions() {
+    }
+
+    /**
+     * Метка запуска; значения, передаваемые наружу (ETag), должны ее включать,
+     * иначе версия до перезапуска совпадет с версией после.
+     */
+    public static String epoch() {
+        return EPOCH;
+    }
+
+    public static long get(Table table) {
+        return versions.get(table.ordinal());
+    }
+
+    public static void bump(Table... tables) {
+        for (Table table : tables) {
+            versions.incrementAndGet(table.ordinal());
+        }
+    }
+
+    /**
+     * Штамп данных одного абонента (статус, услуги, счета). Абоненты из одной полосы делят штамп,
+     * так что запись по одному из них лишь изредка и без вреда сбрасывает и штамп соседа.
+     */
+    public static long subscriber(int subscriberId) {
+        return subscriberStamps.get(Math.floorMod(subscriberId, SUBSCRIBER_STRIPES));
+    }
+
+    public static void bumpSubscriber(int subscriberId) {
+        subscriberStamps.incrementAndGet(Math.floorMod(subscriberId, SUBSCRIBER_STRIPES));
+    }
+
+    /**
+     * Для пакетных операций, затрагивающих многих абонентов (биллинг).
+     */
+    public static void bumpAllSubscribers() {
+        for (int i = 0; i < SUBSCRIBER_STRIPES; i++) {
+            subscriberStamps.incrementAndGet(i);
+        }
+    }
+
+    /**
+     * Для операций, меняющих данные целиком (сброс БД, генерация набора, произвольная транзакция).
+     */
+    public static void bumpAll() {
+        bump(Table.values());
+        bumpAllSubscribers();
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.db;
+
+/**
+ * Параметры синтетического набора данных для нагрузочного тестирования.
+ * При одинаковых параметрах и seed генератор выдает одинаковые данные.
+ */
+public class DatasetSpec {
+
+    public static final int MAX_SUBSCRIBERS = 2_000_000;
+    public static final int MAX_SERVICES = 1_000;
+    public static final int MAX_INVOICES_PER_SUBSCRIBER = 36;
+
+    private final int subscribers;
+    private final int services;
+    private final int invoicesPerSubscriber;
+    private final long seed;
+
+    public DatasetSpec(int subscribers, int services, int invoicesPerSubscriber, long seed) {
+        if (subscribers < 0 || subscribers > MAX_SUBSCRIBERS) {
+            throw new IllegalArgumentException("Число абонентов должно быть от 0 до " + MAX_SUBSCRIBERS);
+        }
+        if (services < 1 || services > MAX_SERVICES) {
+            throw new IllegalArgumentException("Число услуг должно быть от 1 до " + MAX_SERVICES);
+        }
+        if (invoicesPerSubscriber < 0 || invoicesPerSubscriber > MAX_INVOICES_PER_SUBSCRIBER) {
+            throw new IllegalArgumentException("Счетов на абонента должно быть от 0 до " + MAX_INVOICES_PER_SUBSCRIBER);
+        }
+        this.subscribers = subscribers;
+        this.services = services;
+        this.invoicesPerSubscriber = invoicesPerSubscriber;
+        this.seed = seed;
+    }
+
+    public int getSubscribers() { return subscribers; }
+
+    public int getServices() { return services; }
+
+    public int getInvoicesPerSubscriber() { return invoicesPerSubscriber; }
+
+    public long getSeed() { return seed; }
+
+    @Override
+    public String toString() {
+        return "subscribers=" + subscribers + " services=" + services
+                + " invoicesPerSubscriber=" + invoicesPerSubscriber + " seed=" + seed;
+    }
+}
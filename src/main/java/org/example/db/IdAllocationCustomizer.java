@@ -0,0 +1,35 @@
+package org.example.db;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sequencing.Sequence;
+import org.eclipse.persistence.sessions.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Применяет настраиваемый размер диапазона id к общему табличному генератору из orm.xml.
+ * <p>
+ * EclipseLink выделяет id диапазонами: одно обновление строки SEQUENCE дает allocationSize значений,
+ * которые затем раздаются потокам из памяти под блокировкой самой последовательности.
+ * При пакетной вставке это убирает обращение к БД за id на каждую строку.
+ */
+public class IdAllocationCustomizer implements SessionCustomizer {
+    private static final Logger logger = LoggerFactory.getLogger(IdAllocationCustomizer.class);
+
+    public static final String GENERATOR = "telecom_ids";
+    public static final String ALLOCATION_SIZE_PROPERTY = "telecom.id.allocation-size";
+
+    @Override
+    public void customize(Session session) {
+        Sequence sequence = session.getDatasourceLogin().getSequence(GENERATOR);
+        if (sequence == null) {
+            logger.warn("Генератор id {} не найден, размер диапазона не изменен.", GENERATOR);
+            return;
+        }
+        Object value = session.getProperty(ALLOCATION_SIZE_PROPERTY);
+        if (value != null && !value.toString().isBlank()) {
+            sequence.setPreallocationSize(Integer.parseInt(value.toString().trim()));
+        }
+        logger.info("Генератор id {}: диапазон {}", GENERATOR, sequence.getPreallocationSize());
+    }
+}
@@ -1,23 +1,73 @@
 package org.example.db;
 
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import org.eclipse.persistence.config.PersistenceUnitProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
 public class JpaManager {
     private static final Logger logger = LoggerFactory.getLogger(JpaManager.class);
 
     private static final String PERSISTENCE_UNIT_NAME = "telecom-pu";
+    private static final String CONFIG_RESOURCE = "/db.properties";
+
+    /** Профиль БД: системное свойство или переменная окружения; без профиля используется MySQL из db.properties. */
+    public static final String PROFILE_PROPERTY = "telecom.db.profile";
+    /** Общий (L2) кэш EclipseLink; как и профиль, выставляется системным свойством до первого обращения. */
+    public static final String SHARED_CACHE_PROPERTY = "jpa.sharedCache";
+    private static final String PROFILE_ENV = "TELECOM_DB_PROFILE";
+
+    private static final int DEFAULT_JDBC_BATCH_SIZE = 500;
 
     public static final EntityManagerFactory emf;
 
+    private static final HikariDataSource dataSource;
+    private static final int jdbcBatchSize;
+    private static final boolean sharedCache;
+    private static final PoolMetrics poolMetrics = new PoolMetrics();
+
     static {
         logger.info("Инициализация JPA EntityManagerFactory...");
         try {
-            emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
-            logger.info("EntityManagerFactory успешно инициализирована.");
+            String profile = activeProfile();
+            Properties config = loadConfig(profile);
+            dataSource = createDataSource(config);
+            jdbcBatchSize = intProperty(config, "jdbc.batchSize", DEFAULT_JDBC_BATCH_SIZE);
+            sharedCache = !"false".equalsIgnoreCase(config.getProperty(SHARED_CACHE_PROPERTY, "true").trim());
+
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(PersistenceUnitProperties.NON_JTA_DATASOURCE, dataSource);
+            // Диапазоны id выделяются отдельной короткой транзакцией, а не внутри транзакции вставки:
+            // строка SEQUENCE не остается заблокированной до коммита пачки
+            properties.put(PersistenceUnitProperties.JDBC_SEQUENCE_CONNECTION_POOL, "true");
+            properties.put(PersistenceUnitProperties.JDBC_SEQUENCE_CONNECTION_POOL_DATASOURCE, dataSource);
+            properties.put(PersistenceUnitProperties.BATCH_WRITING_SIZE, String.valueOf(jdbcBatchSize));
+            properties.put(PersistenceUnitProperties.CACHE_SHARED_DEFAULT, String.valueOf(sharedCache));
+            properties.put(PersistenceUnitProperties.SESSION_CUSTOMIZER, IdAllocationCustomizer.class.getName());
+            properties.put(IdAllocationCustomizer.ALLOCATION_SIZE_PROPERTY, config.getProperty("id.allocationSize", ""));
+            properties.put(PersistenceUnitProperties.SESSION_EVENT_LISTENER_CLASS, SqlMonitor.class.getName());
+            properties.put(SqlMonitor.SLOW_QUERY_PROPERTY, config.getProperty("sql.slowQueryMs", ""));
+            properties.put(SqlMonitor.REPEAT_THRESHOLD_PROPERTY, config.getProperty("sql.repeatThreshold", ""));
+            putIfConfigured(properties, config, "jpa.targetDatabase", PersistenceUnitProperties.TARGET_DATABASE);
+            putIfConfigured(properties, config, "jpa.ddlGeneration", PersistenceUnitProperties.DDL_GENERATION);
+            putIfConfigured(properties, config, "jpa.tableSuffix", PersistenceUnitProperties.TABLE_CREATION_SUFFIX);
+            emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, properties);
+            // Развертывание (и генерация DDL) происходит при первом EntityManager; схема проверяется после него
+            emf.createEntityManager().close();
+            SchemaMaintenance.run(dataSource);
+            logger.info("EntityManagerFactory успешно инициализирована (профиль БД: {}, общий кэш: {}).",
+                    profile == null ? "по умолчанию" : profile, sharedCache ? "включен" : "выключен");
         } catch (Exception e) {
             logger.error("КРИТИЧЕСКАЯ ОШИБКА: Не удалось инициализировать EntityManagerFactory!", e);
             throw new RuntimeException("Ошибка инициализации EntityManagerFactory", e);
@@ -27,4 +77,117 @@ public class JpaManager {
     public static EntityManager getEntityManager() {
         return emf.createEntityManager();
     }
-}
\ No newline at end of file
+
+    /**
+     * @return сколько операторов записи EclipseLink отправляет одной JDBC-пачкой
+     */
+    public static int getJdbcBatchSize() {
+        return jdbcBatchSize;
+    }
+
+    /**
+     * @return включен ли общий кэш сущностей EclipseLink, переживающий EntityManager
+     */
+    public static boolean isSharedCacheEnabled() {
+        return sharedCache;
+    }
+
+    /**
+     * @return текущее состояние пула соединений и накопленные задержки получения соединения
+     */
+    public static ConnectionPoolStats getPoolStats() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        return new ConnectionPoolStats(
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getTotalConnections(),
+                pool.getThreadsAwaitingConnection(),
+                dataSource.getMaximumPoolSize(),
+                dataSource.getMinimumIdle(),
+                poolMetrics);
+    }
+
+    public static void shutdown() {
+        try {
+            if (emf.isOpen()) {
+                emf.close();
+            }
+        } finally {
+            dataSource.close();
+            logger.info("EntityManagerFactory и пул соединений закрыты.");
+        }
+    }
+
+    private static HikariDataSource createDataSource(Properties config) {
+        HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName("telecom-pool");
+        hikari.setDriverClassName(config.getProperty("db.driver"));
+        hikari.setJdbcUrl(config.getProperty("db.url"));
+        hikari.setUsername(config.getProperty("db.user"));
+        hikari.setPassword(config.getProperty("db.password"));
+
+        hikari.setMinimumIdle(intProperty(config, "pool.minIdle", 2));
+        hikari.setMaximumPoolSize(intProperty(config, "pool.maxSize", 10));
+        hikari.setConnectionTimeout(longProperty(config, "pool.connectionTimeoutMs", 5_000));
+        hikari.setIdleTimeout(longProperty(config, "pool.idleTimeoutMs", 300_000));
+        hikari.setMaxLifetime(longProperty(config, "pool.maxLifetimeMs", 1_800_000));
+        hikari.setLeakDetectionThreshold(longProperty(config, "pool.leakDetectionThresholdMs", 0));
+
+        // EclipseLink сам управляет транзакциями и ожидает autocommit по умолчанию
+        hikari.setAutoCommit(true);
+        hikari.setRegisterMbeans(true);
+        hikari.setMetricsTrackerFactory(poolMetrics);
+
+        HikariDataSource ds = new HikariDataSource(hikari);
+        logger.info("Пул соединений: min={}, max={}, url={}",
+                ds.getMinimumIdle(), ds.getMaximumPoolSize(), config.getProperty("db.url"));
+        return ds;
+    }
+
+    private static String activeProfile() {
+        String profile = System.getProperty(PROFILE_PROPERTY, System.getenv(PROFILE_ENV));
+        return profile == null || profile.isBlank() ? null : profile.trim().toLowerCase();
+    }
+
+    /**
+     * Настройки из db.properties или db-&lt;профиль&gt;.properties;
+     * любую можно переопределить системным свойством с тем же именем.
+     */
+    private static Properties loadConfig(String profile) throws IOException {
+        String resource = profile == null ? CONFIG_RESOURCE : "/db-" + profile + ".properties";
+        Properties config = new Properties();
+        try (InputStream in = JpaManager.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Не найден файл настроек " + resource);
+            }
+            config.load(in);
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("db.") || name.startsWith("pool.") || name.startsWith("id.")
+                    || name.startsWith("jpa.") || name.startsWith("sql.") || name.startsWith("jdbc.")) {
+                config.setProperty(name, System.getProperty(name));
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Переносит настройку в свойства persistence unit; пустое значение тоже применяется (например, пустой суффикс таблиц).
+     */
+    private static void putIfConfigured(Map<String, Object> properties, Properties config, String name, String puProperty) {
+        String value = config.getProperty(name);
+        if (value != null) {
+            properties.put(puProperty, value.trim());
+        }
+    }
+
+    private static int intProperty(Properties config, String name, int def) {
+        String value = config.getProperty(name);
+        return value == null || value.isBlank() ? def : Integer.parseInt(value.trim());
+    }
+
+    private static long longProperty(Properties config, String name, long def) {
+        String value = config.getProperty(name);
+        return value == null || value.isBlank() ? def : Long.parseLong(value.trim());
+    }
+}
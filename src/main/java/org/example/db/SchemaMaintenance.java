@@ -0,0 +1,130 @@
+package org.example.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Доводит существующую схему до ожидаемой после генерации DDL.
+ * <p>
+ * Режим create-or-extend-tables добавляет в существующие таблицы только недостающие столбцы,
+ * но не ограничения и индексы, поэтому то, от чего зависит корректность данных, проверяется здесь.
+ * Выполняется один раз при старте, после развертывания persistence unit.
+ */
+final class SchemaMaintenance {
+
+    private static final Logger logger = LoggerFactory.getLogger(SchemaMaintenance.class);
+
+    static final String INVOICE_PERIOD_CONSTRAINT = "uk_invoices_subscriber_period";
+
+    /** Строка генератора telecom_ids (META-INF/orm.xml) и таблицы, получающие из него id. */
+    private static final String ID_SEQUENCE = "SEQ_GEN";
+    private static final List<String> GENERATED_ID_TABLES = List.of("subscribers", "services", "invoices", "users");
+
+    private SchemaMaintenance() {
+    }
+
+    static void run(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            ensureInvoicePeriodConstraint(connection);
+            ensureIdSequenceAhead(connection);
+        }
+    }
+
+    /**
+     * Уникальность (абонент, период) - то, что делает биллинг идемпотентным: проверка NOT EXISTS
+     * в запросе биллинга не защищает от двух одновременных запусков.
+     */
+    private static void ensureInvoicePeriodConstraint(Connection connection) throws SQLException {
+        if (hasUniqueIndex(connection, "invoices", Set.of("subscriber_id", "billing_period"))) {
+            return;
+        }
+        logger.info("Добавление ограничения {} в таблицу invoices", INVOICE_PERIOD_CONSTRAINT);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("ALTER TABLE invoices ADD CONSTRAINT " + INVOICE_PERIOD_CONSTRAINT
+                    + " UNIQUE (subscriber_id, billing_period)");
+        } catch (SQLException e) {
+            // Обычно мешают уже существующие дубли: их нужно удалить вручную, приложение продолжит работу
+            logger.error("Не удалось добавить ограничение {}: повторный биллинг за период не защищен от "
+                    + "одновременных запусков. Проверьте дубли счетов по (subscriber_id, billing_period).",
+                    INVOICE_PERIOD_CONSTRAINT, e);
+        }
+    }
+
+    /**
+     * Строки, созданные до перехода на табличный генератор, сохранили id из AUTO_INCREMENT, и счетчик
+     * SEQ_GEN может оказаться ниже них: тогда первый же выделенный диапазон повторил бы существующие id.
+     * Счетчик поднимается до максимального id; условие в UPDATE делает шаг безопасным при одновременном
+     * старте нескольких узлов. В отличие от ограничения, ошибка здесь останавливает запуск.
+     */
+    private static void ensureIdSequenceAhead(Connection connection) throws SQLException {
+        long maxId = 0;
+        try (Statement statement = connection.createStatement()) {
+            for (String table : GENERATED_ID_TABLES) {
+                try (ResultSet rs = statement.executeQuery("SELECT MAX(id) FROM " + table)) {
+                    if (rs.next()) {
+                        maxId = Math.max(maxId, rs.getLong(1));
+                    }
+                }
+            }
+        }
+
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE SEQUENCE SET SEQ_COUNT = ? WHERE SEQ_NAME = ? AND SEQ_COUNT < ?")) {
+            update.setLong(1, maxId);
+            update.setString(2, ID_SEQUENCE);
+            update.setLong(3, maxId);
+            if (update.executeUpdate() > 0) {
+                logger.info("Счетчик {} поднят до максимального существующего id {}", ID_SEQUENCE, maxId);
+                return;
+            }
+        }
+
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT SEQ_COUNT FROM SEQUENCE WHERE SEQ_NAME = ?")) {
+            select.setString(1, ID_SEQUENCE);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO SEQUENCE (SEQ_NAME, SEQ_COUNT) VALUES (?, ?)")) {
+            insert.setString(1, ID_SEQUENCE);
+            insert.setLong(2, maxId);
+            insert.executeUpdate();
+            logger.info("Создан счетчик {} со значением {}", ID_SEQUENCE, maxId);
+        }
+    }
+
+    private static boolean hasUniqueIndex(Connection connection, String table, Set<String> columns)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Map<String, Set<String>> indexes = new HashMap<>();
+        for (String name : new String[]{table, table.toUpperCase()}) {
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, name, true, false)) {
+                while (rs.next()) {
+                    String index = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (index != null && column != null) {
+                        indexes.computeIfAbsent(index, k -> new HashSet<>()).add(column.toLowerCase());
+                    }
+                }
+            }
+        }
+        return indexes.containsValue(columns);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.db;
+
+import org.eclipse.persistence.internal.databaseaccess.DatabaseCall;
+import org.eclipse.persistence.queries.Call;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Слушатель событий сессии EclipseLink: замеряет каждый SQL-вызов и относит его к трассе текущего запроса.
+ * Медленные запросы логируются вместе с типами параметров (без значений), повторяющиеся SELECT -
+ * как возможная проблема N+1.
+ * <p>
+ * Экземпляр создает EclipseLink по имени класса; пороги читаются из свойств сессии при подключении.
+ */
+public class SqlMonitor extends SessionEventAdapter {
+    private static final Logger logger = LoggerFactory.getLogger(SqlMonitor.class);
+
+    public static final String SLOW_QUERY_PROPERTY = "telecom.sql.slow-query-ms";
+    public static final String REPEAT_THRESHOLD_PROPERTY = "telecom.sql.repeat-threshold";
+
+    private static final long DEFAULT_SLOW_QUERY_MS = 200;
+    private static final int DEFAULT_REPEAT_THRESHOLD = 5;
+
+    private static final ThreadLocal<long[]> callStarted = ThreadLocal.withInitial(() -> new long[1]);
+
+    private volatile long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_QUERY_MS);
+    private volatile int repeatThreshold = DEFAULT_REPEAT_THRESHOLD;
+
+    @Override
+    public void postLogin(SessionEvent event) {
+        long slowMs = longProperty(event, SLOW_QUERY_PROPERTY, DEFAULT_SLOW_QUERY_MS);
+        slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowMs);
+        repeatThreshold = (int) longProperty(event, REPEAT_THRESHOLD_PROPERTY, DEFAULT_REPEAT_THRESHOLD);
+        logger.info("Мониторинг SQL: медленный запрос от {} мс, порог N+1 - {} одинаковых SELECT за запрос.",
+                slowMs, repeatThreshold);
+    }
+
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        callStarted.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void postExecuteCall(SessionEvent event) {
+        long elapsed = System.nanoTime() - callStarted.get()[0];
+        Call call = event.getCall();
+        String sql = call instanceof DatabaseCall ? ((DatabaseCall) call).getSQLString() : null;
+        if (sql == null && event.getQuery() != null) {
+            sql = event.getQuery().getSQLString();
+        }
+
+        SqlTrace trace = SqlTrace.current();
+        String command = trace != null ? trace.getCommand() : "-";
+        if (trace != null && trace.record(sql, elapsed, repeatThreshold)) {
+            logger.warn("Возможная проблема N+1 в команде {}: один и тот же запрос выполнен {} раз: {}",
+                    command, repeatThreshold, sql);
+        }
+        if (elapsed >= slowQueryNanos) {
+            logger.warn("Медленный запрос ({} мс, команда {}): {} параметры: {}",
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), command, sql, bindShape(call));
+        }
+    }
+
+    /**
+     * Типы привязанных параметров вместо значений: в логах не должно оказаться персональных данных.
+     */
+    private static String bindShape(Call call) {
+        if (!(call instanceof DatabaseCall)) {
+            return "[]";
+        }
+        List<?> parameters = ((DatabaseCall) call).getParameters();
+        StringJoiner shape = new StringJoiner(", ", "[", "]");
+        if (parameters != null) {
+            for (Object parameter : parameters) {
+                shape.add(parameter == null ? "null" : parameter.getClass().getSimpleName());
+            }
+        }
+        return shape.toString();
+    }
+
+    private static long longProperty(SessionEvent event, String name, long def) {
+        Object value = event.getSession().getProperty(name);
+        return value == null || value.toString().isBlank() ? def : Long.parseLong(value.toString().trim());
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.db;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * SQL-статистика одного HTTP-запроса: сколько выполнено запросов, сколько они заняли
+ * и какие одинаковые SELECT повторялись (признак N+1).
+ * <p>
+ * Привязана к потоку запроса; задачи параллельной загрузки получают ту же трассу через {@link #propagate},
+ * поэтому счетчики потокобезопасны.
+ */
+public final class SqlTrace {
+
+    private static final ThreadLocal<SqlTrace> current = new ThreadLocal<>();
+
+    private final String command;
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final ConcurrentMap<String, AtomicInteger> selects = new ConcurrentHashMap<>();
+    private final AtomicInteger suspectedNPlusOne = new AtomicInteger();
+
+    private SqlTrace(String command) {
+        this.command = command;
+    }
+
+    /**
+     * Начинает трассу для команды в текущем потоке.
+     */
+    public static SqlTrace begin(String command) {
+        SqlTrace trace = new SqlTrace(command);
+        current.set(trace);
+        return trace;
+    }
+
+    public static void end() {
+        current.remove();
+    }
+
+    static SqlTrace current() {
+        return current.get();
+    }
+
+    /**
+     * Оборачивает задачу так, чтобы ее запросы учитывались в трассе потока, создавшего задачу.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> task) {
+        SqlTrace trace = current.get();
+        if (trace == null) {
+            return task;
+        }
+        return () -> {
+            SqlTrace previous = current.get();
+            current.set(trace);
+            try {
+                return task.get();
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return true, если этот SELECT только что достиг порога повторов (сообщать о нем нужно один раз)
+     */
+    boolean record(String sql, long elapsedNanos, int repeatThreshold) {
+        statements.increment();
+        nanos.add(elapsedNanos);
+        // Повтор одинаковых INSERT/UPDATE - это пакетная запись, а не N+1
+        if (sql == null || !sql.stripLeading().toUpperCase(Locale.ROOT).startsWith("SELECT")) {
+            return false;
+        }
+        int repeats = selects.computeIfAbsent(sql, k -> new AtomicInteger()).incrementAndGet();
+        if (repeats == repeatThreshold) {
+            suspectedNPlusOne.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    public int getSuspectedNPlusOne() {
+        return suspectedNPlusOne.get();
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.db;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import jakarta.persistence.TypedQuery;
+import org.eclipse.persistence.config.EntityManagerProperties;
+import org.eclipse.persistence.config.ExclusiveConnectionMode;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.example.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Единица работы: один EntityManager на HTTP-запрос и общий для всех DAO шаблон чтения/записи.
+ * <p>
+ * FrontControllerFilter открывает ее через {@link #begin()} и закрывает через {@link #end()};
+ * EntityManager создается при первом обращении к БД и держит одно соединение из пула до конца запроса.
+ * Вне запроса (фоновая тарификация, инициализация данных) каждый вызов получает собственный EntityManager.
+ */
+public final class UnitOfWork {
+    private static final Logger logger = LoggerFactory.getLogger(UnitOfWork.class);
+
+    private static final String WRITE_ERROR = "Ошибка доступа к данным JPA.";
+
+    // Все чтения и запись запроса идут через одно эксклюзивное соединение, а не берут его из пула на каждый запрос
+    private static final Map<String, Object> REQUEST_PROPERTIES =
+            Map.of(EntityManagerProperties.EXCLUSIVE_CONNECTION_MODE, ExclusiveConnectionMode.Always);
+
+    private static final ThreadLocal<Scope> current = new ThreadLocal<>();
+
+    private UnitOfWork() {
+    }
+
+    public static void begin() {
+        if (current.get() != null) {
+            throw new IllegalStateException("Единица работы уже открыта в этом потоке.");
+        }
+        current.set(new Scope());
+    }
+
+    public static void end() {
+        Scope scope = current.get();
+        current.remove();
+        if (scope != null) {
+            scope.close();
+        }
+    }
+
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * Выполняет чтение без транзакции. Любая ошибка, кроме исключений приложения,
+     * превращается в DataAccessException с указанным сообщением.
+     */
+    public static <T> T read(String errorMessage, Function<EntityManager, T> block) {
+        EntityManager em = acquire();
+        try {
+            return block.apply(em);
+        } catch (RuntimeException e) {
+            throw translate(errorMessage, e);
+        } finally {
+            release(em);
+        }
+    }
+
+    /**
+     * Выполняет блок в транзакции. Если транзакция уже идет (вложенный вызов DAO), блок к ней присоединяется.
+     * При ошибке транзакция откатывается, а контекст персистентности очищается.
+     */
+    public static <T> T write(Function<EntityManager, T> block) {
+        EntityManager em = acquire();
+        EntityTransaction tx = em.getTransaction();
+        if (tx.isActive()) {
+            try {
+                return block.apply(em);
+            } catch (RuntimeException e) {
+                throw translate(WRITE_ERROR, e);
+            }
+        }
+        try {
+            tx.begin();
+            T result = block.apply(em);
+            tx.commit();
+            return result;
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            // После отката управляемые объекты могут не соответствовать БД
+            em.clear();
+            throw translate(WRITE_ERROR, e);
+        } finally {
+            release(em);
+        }
+    }
+
+    /**
+     * Как {@link #write}, но после коммита очищает контекст персистентности EntityManager запроса.
+     * Для пакетной записи (импорт): иначе каждый сохраненный объект остается управляемым до конца запроса.
+     * Если блок присоединился к внешней транзакции, контекст не очищается - объекты вызывающего
+     * кода не должны отсоединяться посреди его транзакции.
+     */
+    public static <T> T writeBatch(Function<EntityManager, T> block) {
+        Scope scope = current.get();
+        boolean joined = scope != null && scope.em != null && scope.em.getTransaction().isActive();
+        T result = write(block);
+        if (scope != null && !joined) {
+            scope.em.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Помечает запрос как read-only: результаты не регистрируются в контексте персистентности
+     * и не отслеживаются при коммите. Изменять такие объекты нельзя.
+     */
+    public static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        return query.setHint(QueryHints.READ_ONLY, HintValues.TRUE);
+    }
+
+    /**
+     * EntityManager текущего запроса или новый, если единица работы не открыта.
+     * Каждый вызов должен завершаться {@link #release(EntityManager)}.
+     */
+    public static EntityManager acquire() {
+        Scope scope = current.get();
+        return scope != null ? scope.entityManager() : JpaManager.getEntityManager();
+    }
+
+    /**
+     * Закрывает EntityManager, полученный через {@link #acquire()}, если он не принадлежит текущему запросу.
+     */
+    public static void release(EntityManager em) {
+        Scope scope = current.get();
+        if (scope == null || scope.em != em) {
+            em.close();
+        }
+    }
+
+    private static RuntimeException translate(String message, RuntimeException e) {
+        if (e instanceof DataAccessException) {
+            return e;
+        }
+        return new DataAccessException(message, e);
+    }
+
+    private static final class Scope {
+        private EntityManager em;
+
+        EntityManager entityManager() {
+            if (em == null) {
+                em = JpaManager.emf.createEntityManager(REQUEST_PROPERTIES);
+            }
+            return em;
+        }
+
+        void close() {
+            if (em == null) {
+                return;
+            }
+            try {
+                if (em.getTransaction().isActive()) {
+                    logger.warn("Незавершенная транзакция в конце запроса - откатываем.");
+                    em.getTransaction().rollback();
+                }
+            } finally {
+                em.close();
+            }
+        }
+    }
+}
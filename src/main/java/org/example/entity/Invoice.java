@@ -5,11 +5,17 @@ import java.time.LocalDate;
 import java.util.Objects;
 
 @Entity
-@Table(name = "invoices")
+@Table(
+        name = "invoices",
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_invoices_subscriber_period",
+                columnNames = {"subscriber_id", "billing_period"}
+        )
+)
 public class Invoice {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "telecom_ids")
     private int id;
 
     private double amount;
@@ -20,6 +26,12 @@ public class Invoice {
     @Column(name = "is_paid")
     private boolean isPaid;
 
+    /**
+     * Расчетный период в формате yyyy-MM для счетов, выставленных биллингом; null для ручных счетов.
+     */
+    @Column(name = "billing_period", length = 7)
+    private String billingPeriod;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "subscriber_id")
     private Subscriber subscriber;
@@ -71,6 +83,14 @@ public class Invoice {
         isPaid = paid;
     }
 
+    public String getBillingPeriod() {
+        return billingPeriod;
+    }
+
+    public void setBillingPeriod(String billingPeriod) {
+        this.billingPeriod = billingPeriod;
+    }
+
     public Subscriber getSubscriber() {
         return subscriber;
     }
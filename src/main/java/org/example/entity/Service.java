@@ -10,7 +10,7 @@ import java.util.Set;
 public class Service {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "telecom_ids")
     private int id;
 
     @Column(unique = true)
@@ -8,11 +8,17 @@ import java.util.Objects;
 import java.util.Set;
 
 @Entity
-@Table(name = "subscribers")
+@Table(
+        name = "subscribers",
+        indexes = {
+                @Index(name = "idx_subscribers_name_id", columnList = "name, id"),
+                @Index(name = "idx_subscribers_balance_id", columnList = "balance, id")
+        }
+)
 public class Subscriber {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "telecom_ids")
     private int id;
 
     private String name;
@@ -0,0 +1,16 @@
+package org.example.exception;
+
+/**
+ * Операция отклонена из-за перегрузки: очередь ограниченного пула заполнена или ожидание истекло.
+ * Запрос стоит повторить позже (HTTP 503).
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+
+    public ServiceBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
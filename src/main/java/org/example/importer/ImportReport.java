@@ -0,0 +1,74 @@
+package org.example.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Итог импорта: счетчики, ошибки по строкам и пропускная способность.
+ */
+public class ImportReport {
+
+    public static final int MAX_REPORTED_ERRORS = 200;
+
+    private final List<RowError> errors = new ArrayList<>();
+    private int totalRows;
+    private int imported;
+    private int failed;
+    private int batches;
+    private long elapsedMillis;
+
+    void rowRead() {
+        totalRows++;
+    }
+
+    void imported(int count) {
+        imported += count;
+    }
+
+    void batchWritten() {
+        batches++;
+    }
+
+    void error(int line, String message) {
+        failed++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    void finish(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getTotalRows() { return totalRows; }
+
+    public int getImported() { return imported; }
+
+    public int getFailed() { return failed; }
+
+    public int getBatches() { return batches; }
+
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    public double getRowsPerSecond() {
+        return elapsedMillis == 0 ? totalRows : totalRows * 1000.0 / elapsedMillis;
+    }
+
+    public List<RowError> getErrors() { return new ArrayList<>(errors); }
+
+    public boolean isErrorsTruncated() { return failed > errors.size(); }
+
+    public static class RowError {
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine() { return line; }
+
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,191 @@
+package org.example.importer;
+
+import org.example.dao.api.SubscriberDao;
+import org.example.entity.Subscriber;
+import org.example.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Массовый импорт абонентов из CSV: name,phone[,balance].
+ * Файл читается построчно, проверенные строки пишутся пачками в одной транзакции на пачку.
+ */
+public class SubscriberCsvImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SubscriberCsvImporter.class);
+
+    private static final int MAX_HEADER_PEEK = 4096;
+
+    private static final Pattern PHONE = Pattern.compile("\\+?\\d{7,15}");
+    private static final Pattern PHONE_SEPARATORS = Pattern.compile("[\\s()\\-]");
+
+    private final SubscriberDao subscriberDao;
+    private final int batchSize;
+
+    public SubscriberCsvImporter(SubscriberDao subscriberDao, int batchSize) {
+        this.subscriberDao = subscriberDao;
+        this.batchSize = batchSize;
+    }
+
+    public ImportReport importCsv(InputStream input) throws IOException {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        skipByteOrderMark(reader);
+        CsvReader csv = new CsvReader(reader, detectDelimiter(reader));
+
+        Set<String> seenPhones = new HashSet<>();
+        List<Subscriber> batch = new ArrayList<>(batchSize);
+        List<Integer> batchLines = new ArrayList<>(batchSize);
+        boolean first = true;
+
+        for (List<String> record = csv.readRecord(); record != null; record = csv.readRecord()) {
+            int line = csv.getRecordLine();
+            if (first) {
+                first = false;
+                if (isHeader(record)) {
+                    continue;
+                }
+            }
+            report.rowRead();
+
+            Subscriber subscriber;
+            try {
+                subscriber = parse(record);
+            } catch (IllegalArgumentException e) {
+                report.error(line, e.getMessage());
+                continue;
+            }
+            if (!seenPhones.add(subscriber.getPhoneNumber())) {
+                report.error(line, "Телефон " + subscriber.getPhoneNumber() + " повторяется в файле.");
+                continue;
+            }
+
+            batch.add(subscriber);
+            batchLines.add(line);
+            if (batch.size() >= batchSize) {
+                writeBatch(batch, batchLines, report);
+            }
+        }
+        writeBatch(batch, batchLines, report);
+
+        report.finish((System.nanoTime() - start) / 1_000_000);
+        logger.info("Импорт абонентов завершен: строк {}, добавлено {}, ошибок {}, {} мс ({} строк/с)",
+                report.getTotalRows(), report.getImported(), report.getFailed(),
+                report.getElapsedMillis(), Math.round(report.getRowsPerSecond()));
+        return report;
+    }
+
+    private void writeBatch(List<Subscriber> batch, List<Integer> lines, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Set<String> phones = new HashSet<>();
+        for (Subscriber s : batch) {
+            phones.add(s.getPhoneNumber());
+        }
+        Set<String> existing = subscriberDao.findExistingPhones(phones);
+
+        List<Subscriber> valid = new ArrayList<>(batch.size());
+        List<Integer> validLines = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Subscriber s = batch.get(i);
+            if (existing.contains(s.getPhoneNumber())) {
+                report.error(lines.get(i), "Телефон " + s.getPhoneNumber() + " уже зарегистрирован.");
+            } else {
+                valid.add(s);
+                validLines.add(lines.get(i));
+            }
+        }
+
+        try {
+            subscriberDao.addAll(valid);
+            report.imported(valid.size());
+        } catch (DataAccessException e) {
+            // Пачка откатилась целиком (например, телефон заняли параллельно) - повторяем построчно,
+            // чтобы сохранить корректные строки и точно указать ошибочные
+            logger.warn("Пачка из {} строк не записана, повтор по одной: {}", valid.size(), e.getMessage());
+            for (int i = 0; i < valid.size(); i++) {
+                Subscriber s = valid.get(i);
+                s.setId(0);
+                try {
+                    subscriberDao.add(s);
+                    report.imported(1);
+                } catch (DataAccessException rowError) {
+                    report.error(validLines.get(i), rowError.getMessage());
+                }
+            }
+        }
+        report.batchWritten();
+
+        batch.clear();
+        lines.clear();
+    }
+
+    private Subscriber parse(List<String> record) {
+        if (record.size() < 2) {
+            throw new IllegalArgumentException("Ожидается минимум 2 колонки: имя и телефон.");
+        }
+        String name = record.get(0).trim();
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Не указано имя.");
+        }
+        String phone = PHONE_SEPARATORS.matcher(record.get(1)).replaceAll("");
+        if (!PHONE.matcher(phone).matches()) {
+            throw new IllegalArgumentException("Некорректный телефон: " + record.get(1).trim());
+        }
+
+        double balance = 0.0;
+        if (record.size() > 2 && !record.get(2).isBlank()) {
+            try {
+                balance = Double.parseDouble(record.get(2).trim().replace(',', '.'));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Некорректный баланс: " + record.get(2).trim());
+            }
+        }
+        return new Subscriber(name, phone, balance, false);
+    }
+
+    private boolean isHeader(List<String> record) {
+        String first = record.get(0).trim();
+        return first.equalsIgnoreCase("name") || first.equalsIgnoreCase("имя");
+    }
+
+    private void skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Excel в русской локали сохраняет CSV через ';' - определяем разделитель по первой строке.
+     */
+    private char detectDelimiter(BufferedReader reader) throws IOException {
+        reader.mark(MAX_HEADER_PEEK);
+        char[] head = new char[MAX_HEADER_PEEK];
+        int n = reader.read(head);
+        reader.reset();
+
+        int commas = 0;
+        int semicolons = 0;
+        for (int i = 0; i < n && head[i] != '\n'; i++) {
+            if (head[i] == ',') commas++;
+            if (head[i] == ';') semicolons++;
+        }
+        return semicolons > commas ? ';' : ',';
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики одной команды фронт-контроллера: гистограмма времени обработки и счетчики исходов.
+ */
+public class CommandMetrics {
+
+    public enum Outcome {
+        RENDERED, NOT_MODIFIED, REDIRECTED, ERROR, ACCESS_DENIED;
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String command;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LongAdder sqlStatements = new LongAdder();
+    private final LongAdder sqlNanos = new LongAdder();
+    private final LongAdder suspectedNPlusOne = new LongAdder();
+
+    CommandMetrics(String command) {
+        this.command = command;
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Учитывает обработанный запрос вместе с его длительностью.
+     */
+    public void record(Outcome outcome, long nanos) {
+        latency.record(nanos);
+        outcomes[outcome.ordinal()].increment();
+    }
+
+    /**
+     * Учитывает запрос, до обработки которого дело не дошло (например, отказ в доступе).
+     */
+    public void count(Outcome outcome) {
+        outcomes[outcome.ordinal()].increment();
+    }
+
+    /**
+     * Учитывает SQL, выполненный при обработке запроса.
+     */
+    public void recordSql(long statements, long nanos, int nPlusOne) {
+        sqlStatements.add(statements);
+        sqlNanos.add(nanos);
+        suspectedNPlusOne.add(nPlusOne);
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getCount(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    public long getSqlStatements() {
+        return sqlStatements.sum();
+    }
+
+    public long getSqlNanos() {
+        return sqlNanos.sum();
+    }
+
+    public long getSuspectedNPlusOne() {
+        return suspectedNPlusOne.sum();
+    }
+}
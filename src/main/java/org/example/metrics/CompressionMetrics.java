@@ -0,0 +1,55 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики фильтра сжатия ответов: сколько ответов сжато или пропущено,
+ * объем до и после сжатия и процессорное время, потраченное на сжатие.
+ */
+public class CompressionMetrics {
+
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder tooSmall = new LongAdder();
+    private final LongAdder notCompressible = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+
+    CompressionMetrics() {
+    }
+
+    public void recordCompressed(long in, long out, long cpu) {
+        compressed.increment();
+        bytesIn.add(in);
+        bytesOut.add(out);
+        cpuNanos.add(cpu);
+    }
+
+    public void recordTooSmall() {
+        tooSmall.increment();
+    }
+
+    public void recordNotCompressible() {
+        notCompressible.increment();
+    }
+
+    public long getCompressed() { return compressed.sum(); }
+
+    public long getTooSmall() { return tooSmall.sum(); }
+
+    public long getNotCompressible() { return notCompressible.sum(); }
+
+    public long getBytesIn() { return bytesIn.sum(); }
+
+    public long getBytesOut() { return bytesOut.sum(); }
+
+    public long getCpuNanos() { return cpuNanos.sum(); }
+
+    /**
+     * @return доля исходного объема, оставшаяся после сжатия (0.1 - ответ сжат в 10 раз)
+     */
+    public double getRatio() {
+        long in = getBytesIn();
+        return in == 0 ? 0 : (double) getBytesOut() / in;
+    }
+}
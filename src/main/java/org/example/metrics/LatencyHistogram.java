@@ -0,0 +1,115 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная гистограмма задержек с лог-линейными корзинами (в духе HdrHistogram):
+ * разрешение 1 мкс, относительная погрешность не более 12.5%, диапазон до ~19 часов.
+ * Запись - это несколько инкрементов LongAdder без блокировок.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int LINEAR = 2 * SUB;
+    private static final int MAX_EXP = 36;
+    private static final int BUCKETS = LINEAR + (MAX_EXP - SUB_BITS) * SUB;
+    private static final long MAX_MICROS = (1L << (MAX_EXP + 1)) - 1;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts[index(Math.min(nanos / 1000, MAX_MICROS))].increment();
+        count.increment();
+        sumNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @param quantile значение от 0 до 1, например 0.99
+     * @return верхняя граница корзины, в которую попадает квантиль, в наносекундах
+     */
+    public long quantileNanos(double quantile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long c : snapshot) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(upperBoundMicros(i) * 1000 + 999, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * @return количество значений, не превышающих порог (для кумулятивных корзин Prometheus)
+     */
+    public long countAtOrBelow(long nanos) {
+        long micros = nanos / 1000;
+        long result = 0;
+        for (int i = 0; i < BUCKETS && upperBoundMicros(i) <= micros; i++) {
+            result += counts[i].sum();
+        }
+        return result;
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+        }
+        return snapshot;
+    }
+
+    static int index(long micros) {
+        if (micros < LINEAR) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (exp - SUB_BITS)) & (SUB - 1));
+        return LINEAR + (exp - SUB_BITS - 1) * SUB + sub;
+    }
+
+    static long upperBoundMicros(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exp = (index - LINEAR) / SUB + SUB_BITS + 1;
+        int sub = (index - LINEAR) % SUB;
+        long lower = (1L << exp) + ((long) sub << (exp - SUB_BITS));
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+}
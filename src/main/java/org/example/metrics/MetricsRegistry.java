@@ -0,0 +1,48 @@
+package org.example.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Общий для фильтров реестр метрик команд.
+ * Имя команды приходит из запроса, поэтому число отдельных серий ограничено:
+ * сверх лимита все новые имена учитываются под общим "other".
+ */
+public final class MetricsRegistry {
+
+    static final int MAX_COMMANDS = 64;
+    static final String OTHER = "other";
+
+    private static final ConcurrentMap<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    private static final CompressionMetrics compression = new CompressionMetrics();
+
+    private MetricsRegistry() {
+    }
+
+    public static CommandMetrics command(String name) {
+        CommandMetrics metrics = commands.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (commands.size() >= MAX_COMMANDS) {
+            name = OTHER;
+        }
+        return commands.computeIfAbsent(name, CommandMetrics::new);
+    }
+
+    /**
+     * @return метрики всех команд, упорядоченные по имени
+     */
+    public static List<CommandMetrics> getCommands() {
+        List<CommandMetrics> result = new ArrayList<>(commands.values());
+        result.sort(Comparator.comparing(CommandMetrics::getCommand));
+        return result;
+    }
+
+    public static CompressionMetrics compression() {
+        return compression;
+    }
+}
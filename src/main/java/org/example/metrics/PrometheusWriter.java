@@ -0,0 +1,131 @@
+package org.example.metrics;
+
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Вывод метрик в текстовом формате Prometheus (exposition format 0.0.4).
+ */
+public class PrometheusWriter {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Границы корзин гистограмм в секундах. */
+    private static final String[] BUCKETS = {
+            "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+    };
+    private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+
+    static {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            BUCKET_NANOS[i] = Math.round(Double.parseDouble(BUCKETS[i]) * 1e9);
+        }
+    }
+
+    private final PrintWriter out;
+
+    public PrometheusWriter(PrintWriter out) {
+        this.out = out;
+    }
+
+    public void writeCommands(List<CommandMetrics> commands) {
+        header("telecom_command_duration_seconds", "histogram", "Время обработки команды фронт-контроллером.");
+        for (CommandMetrics metrics : commands) {
+            histogramSeries("telecom_command_duration_seconds", commandLabel(metrics), metrics.getLatency());
+        }
+        header("telecom_command_requests_total", "counter", "Запросы к командам по исходу.");
+        for (CommandMetrics metrics : commands) {
+            for (CommandMetrics.Outcome outcome : CommandMetrics.Outcome.values()) {
+                sample("telecom_command_requests_total",
+                        commandLabel(metrics) + ",outcome=\"" + outcome.label() + "\"",
+                        metrics.getCount(outcome));
+            }
+        }
+        header("telecom_command_sql_statements_total", "counter", "SQL-запросы, выполненные командой.");
+        for (CommandMetrics metrics : commands) {
+            sample("telecom_command_sql_statements_total", commandLabel(metrics), metrics.getSqlStatements());
+        }
+        header("telecom_command_sql_seconds_total", "counter", "Суммарное время SQL-запросов команды.");
+        for (CommandMetrics metrics : commands) {
+            sample("telecom_command_sql_seconds_total", commandLabel(metrics), metrics.getSqlNanos() / 1e9);
+        }
+        header("telecom_command_n_plus_one_total", "counter", "Запросы команды с подозрением на N+1.");
+        for (CommandMetrics metrics : commands) {
+            sample("telecom_command_n_plus_one_total", commandLabel(metrics), metrics.getSuspectedNPlusOne());
+        }
+    }
+
+    public void writeCompression(CompressionMetrics compression) {
+        String name = "telecom_http_compression_responses_total";
+        header(name, "counter", "Ответы, прошедшие через фильтр сжатия, по результату.");
+        sample(name, "result=\"compressed\"", compression.getCompressed());
+        sample(name, "result=\"too_small\"", compression.getTooSmall());
+        sample(name, "result=\"not_compressible\"", compression.getNotCompressible());
+        counter("telecom_http_compression_input_bytes_total", "Байт ответов до сжатия.", compression.getBytesIn());
+        counter("telecom_http_compression_output_bytes_total", "Байт ответов после сжатия.", compression.getBytesOut());
+        counter("telecom_http_compression_cpu_seconds_total", "Процессорное время сжатия.",
+                compression.getCpuNanos() / 1e9);
+        gauge("telecom_http_compression_ratio", "Отношение сжатого объема к исходному.", compression.getRatio());
+    }
+
+    public void gauge(String name, String help, double value) {
+        header(name, "gauge", help);
+        sample(name, null, value);
+    }
+
+    public void counter(String name, String help, double value) {
+        header(name, "counter", help);
+        sample(name, null, value);
+    }
+
+    public void histogram(String name, String help, LatencyHistogram histogram) {
+        header(name, "histogram", help);
+        histogramSeries(name, null, histogram);
+    }
+
+    private void header(String name, String type, String help) {
+        out.print("# HELP ");
+        out.print(name);
+        out.print(' ');
+        out.println(help.replace("\\", "\\\\").replace("\n", "\\n"));
+        out.print("# TYPE ");
+        out.print(name);
+        out.print(' ');
+        out.println(type);
+    }
+
+    private void histogramSeries(String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels == null ? "" : labels + ",";
+        for (int i = 0; i < BUCKETS.length; i++) {
+            sample(name + "_bucket", prefix + "le=\"" + BUCKETS[i] + "\"", histogram.countAtOrBelow(BUCKET_NANOS[i]));
+        }
+        // Снимок не атомарный: +Inf и _count берем из одного значения, чтобы они совпадали
+        long count = histogram.getCount();
+        sample(name + "_bucket", prefix + "le=\"+Inf\"", count);
+        sample(name + "_sum", labels, histogram.getSumNanos() / 1e9);
+        sample(name + "_count", labels, count);
+    }
+
+    private void sample(String name, String labels, double value) {
+        out.print(name);
+        if (labels != null) {
+            out.print('{');
+            out.print(labels);
+            out.print('}');
+        }
+        out.print(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.println((long) value);
+        } else {
+            out.println(value);
+        }
+    }
+
+    private static String commandLabel(CommandMetrics metrics) {
+        return "command=\"" + escape(metrics.getCommand()) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.util;
+
+/**
+ * Хеширование паролей для хранения в БД. Закодированный хеш самодостаточен: содержит идентификатор
+ * алгоритма, параметры стоимости и соль, поэтому параметры можно менять без миграции -
+ * старые хеши проверяются по своим параметрам и пересчитываются при следующем входе.
+ */
+public interface PasswordHasher {
+
+    String hash(String password);
+
+    /**
+     * Сравнение выполняется за постоянное время.
+     */
+    boolean verify(String password, String encoded);
+
+    /**
+     * @return true, если хеш построен устаревшим алгоритмом или с меньшей стоимостью, чем текущая
+     */
+    boolean needsRehash(String encoded);
+}
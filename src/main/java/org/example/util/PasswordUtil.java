@@ -8,6 +8,8 @@ public class PasswordUtil {
 
     /**
      * Хеширует пароль алгоритмом SHA-256.
+     * Без соли и без стоимости - остался для проверки старых хешей в {@link Pbkdf2PasswordHasher},
+     * новые пароли хешируются им.
      * @param originalPassword пароль в открытом виде
      * @return хеш пароля в шестнадцатеричном формате
      */
@@ -0,0 +1,112 @@
+package org.example.util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * PBKDF2-HMAC-SHA256 со случайной солью для каждого пароля.
+ * Формат: {@code pbkdf2-sha256$итерации$соль$хеш} (соль и хеш в Base64 без дополнения).
+ * <p>
+ * Кроме своего формата проверяет старые хеши {@link PasswordUtil} - SHA-256 без соли,
+ * 64 шестнадцатеричных символа; для них {@link #needsRehash} всегда true.
+ */
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    /** Рекомендация OWASP для PBKDF2-HMAC-SHA256 (2023). */
+    public static final int DEFAULT_ITERATIONS = 600_000;
+
+    private static final String ID = "pbkdf2-sha256";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int LEGACY_LENGTH = 64;
+
+    private static final Base64.Encoder ENCODER = Base64.getEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+
+    public Pbkdf2PasswordHasher() {
+        this(DEFAULT_ITERATIONS);
+    }
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Число итераций должно быть положительным: " + iterations);
+        }
+        this.iterations = iterations;
+    }
+
+    @Override
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return ID + '$' + iterations + '$' + ENCODER.encodeToString(salt) + '$'
+                + ENCODER.encodeToString(derive(password, salt, iterations));
+    }
+
+    @Override
+    public boolean verify(String password, String encoded) {
+        if (password == null || encoded == null) {
+            return false;
+        }
+        if (isLegacy(encoded)) {
+            String legacy = PasswordUtil.hash(password);
+            return legacy != null && MessageDigest.isEqual(
+                    legacy.getBytes(StandardCharsets.US_ASCII), encoded.getBytes(StandardCharsets.US_ASCII));
+        }
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4 || !ID.equals(parts[0])) {
+            return false;
+        }
+        try {
+            byte[] expected = DECODER.decode(parts[3]);
+            byte[] actual = derive(password, DECODER.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean needsRehash(String encoded) {
+        if (encoded == null || isLegacy(encoded)) {
+            return true;
+        }
+        String[] parts = encoded.split("\\$");
+        try {
+            return parts.length != 4 || !ID.equals(parts[0]) || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static boolean isLegacy(String encoded) {
+        if (encoded.length() != LEGACY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length(); i++) {
+            if (Character.digit(encoded.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Алгоритм " + ALGORITHM + " недоступен.", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.example.web;
+
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+
+/**
+ * Подменяет в ссылках {@code @{/css/style.css}} путь файла на путь с отпечатком содержимого
+ * из {@link StaticAssets}. Остальные ссылки строятся как обычно.
+ */
+final class AssetLinkBuilder extends StandardLinkBuilder {
+
+    private final StaticAssets assets;
+    private final String contextPath;
+
+    AssetLinkBuilder(StaticAssets assets, String contextPath) {
+        this.assets = assets;
+        this.contextPath = contextPath;
+    }
+
+    @Override
+    protected String processLink(IExpressionContext context, String link) {
+        if (link.startsWith(contextPath) && link.indexOf('?') < 0 && link.indexOf('#') < 0) {
+            String versioned = assets.versionedPath(link.substring(contextPath.length()));
+            if (versioned != null) {
+                // Без encodeURL: jsessionid в адресе файла сделал бы его своим для каждой сессии
+                return contextPath + versioned;
+            }
+        }
+        return super.processLink(context, link);
+    }
+}
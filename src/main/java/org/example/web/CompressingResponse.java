@@ -0,0 +1,426 @@
+package org.example.web;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.example.metrics.CompressionMetrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Обертка ответа для {@link CompressionFilter}.
+ * <p>
+ * Первые {@code minSize} байт копятся в буфере: если ответ закончился раньше, он уходит несжатым
+ * с Content-Length. Как только буфер переполнен, по типу содержимого и статусу решается,
+ * сжимать ли ответ, и дальше данные идут через {@link Deflater} без накопления. Сброс потока
+ * (flush) после этого выполняется в режиме SYNC_FLUSH: уже записанное доходит до клиента
+ * целиком, поэтому потоковые страницы отображаются по мере формирования.
+ */
+final class CompressingResponse extends HttpServletResponseWrapper {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private static final byte[] GZIP_HEADER = {
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private final String encoding;
+    private final int minSize;
+    private final DeflaterPool pool;
+    private final CompressionMetrics metrics;
+
+    private CompressingStream stream;
+    private PrintWriter writer;
+    private long contentLength = -1;
+
+    CompressingResponse(HttpServletResponse response, String encoding, int minSize,
+                        DeflaterPool pool, CompressionMetrics metrics) {
+        super(response);
+        this.encoding = encoding;
+        this.minSize = minSize;
+        this.pool = pool;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() уже вызван для этого ответа");
+        }
+        return stream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException("getOutputStream() уже вызван для этого ответа");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(stream(), Charset.forName(getCharacterEncoding())));
+        }
+        return writer;
+    }
+
+    private CompressingStream stream() {
+        if (stream == null) {
+            stream = new CompressingStream();
+        }
+        return stream;
+    }
+
+    // Длину сжатого ответа заранее не знает никто, поэтому заявленная приложением длина
+    // передается контейнеру, только если ответ в итоге уходит несжатым
+
+    @Override
+    public void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        if (stream != null && stream.passthrough) {
+            super.setContentLengthLong(len);
+        } else {
+            contentLength = len;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value == null ? -1 : Long.parseLong(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    // Тело ошибки и перенаправления пишет контейнер в исходный ответ, накопленное приложением отбрасывается
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        discardBuffer();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        discardBuffer();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        discardBuffer();
+        super.sendRedirect(location);
+    }
+
+    private void discardBuffer() {
+        if (stream != null && !stream.started) {
+            stream.buffered = 0;
+            stream.finished = true;
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        } else if (stream != null) {
+            stream.flush();
+        } else {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return super.isCommitted() || (stream != null && stream.started);
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (isCommitted()) {
+            throw new IllegalStateException("Ответ уже отправлен");
+        }
+        super.resetBuffer();
+        if (stream != null) {
+            stream.buffered = 0;
+        }
+        if (writer != null) {
+            // В буфере OutputStreamWriter могли остаться символы старого содержимого
+            writer = new PrintWriter(new OutputStreamWriter(stream, Charset.forName(getCharacterEncoding())));
+        }
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        super.reset();
+        contentLength = -1;
+    }
+
+    /**
+     * Дописывает остаток ответа: буфер маленького ответа или хвост сжатого потока.
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.finish();
+        } else if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+    }
+
+    /**
+     * Возвращает {@link Deflater} в пул; вызывается в любом случае, в том числе после ошибки.
+     */
+    void release() {
+        if (stream != null) {
+            stream.release();
+        }
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.contains("json") || type.contains("javascript")
+                || type.contains("xml");
+    }
+
+    private static long cpuTime() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private final class CompressingStream extends ServletOutputStream {
+
+        private final byte[] buffer = new byte[minSize];
+        private int buffered;
+        private boolean passthrough;
+        private boolean started;
+        private boolean finished;
+
+        private Deflater deflater;
+        private CRC32 crc;
+        private byte[] chunk;
+        private long bytesIn;
+        private long bytesOut;
+        private long cpuNanos;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (deflater == null && !passthrough && buffered < buffer.length) {
+                buffer[buffered++] = (byte) b;
+            } else {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Ответ уже завершен");
+            }
+            if (passthrough) {
+                getResponse().getOutputStream().write(b, off, len);
+            } else if (deflater != null) {
+                deflate(b, off, len);
+            } else if (buffered + len <= buffer.length) {
+                System.arraycopy(b, off, buffer, buffered, len);
+                buffered += len;
+            } else {
+                if (start()) {
+                    deflate(buffer, 0, buffered);
+                    deflate(b, off, len);
+                } else {
+                    ServletOutputStream out = getResponse().getOutputStream();
+                    out.write(buffer, 0, buffered);
+                    out.write(b, off, len);
+                }
+                buffered = 0;
+            }
+        }
+
+        /**
+         * Пока решение о сжатии не принято, flush ничего не делает: Thymeleaf сбрасывает поток
+         * в конце каждой страницы, и честный сброс отправлял бы маленькие ответы несжатыми
+         * без Content-Length.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (deflater != null) {
+                long cpu = cpuTime();
+                drain(Deflater.SYNC_FLUSH);
+                cpuNanos += cpuTime() - cpu;
+                getResponse().getOutputStream().flush();
+            } else if (passthrough) {
+                getResponse().getOutputStream().flush();
+            }
+        }
+
+        /**
+         * Принимает решение о сжатии, когда буфер переполнен.
+         *
+         * @return true, если дальше ответ сжимается
+         */
+        private boolean start() throws IOException {
+            HttpServletResponse resp = (HttpServletResponse) getResponse();
+            if (!isCompressible(resp.getContentType()) || resp.containsHeader("Content-Encoding")
+                    || resp.getStatus() == HttpServletResponse.SC_NO_CONTENT
+                    || resp.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+                metrics.recordNotCompressible();
+                passthrough = true;
+                if (contentLength >= 0) {
+                    resp.setContentLengthLong(contentLength);
+                }
+                return false;
+            }
+            resp.addHeader("Vary", "Accept-Encoding");
+            resp.setHeader("Content-Encoding", encoding);
+            resp.setContentLengthLong(-1);
+
+            boolean gzip = GZIP.equals(encoding);
+            started = true;
+            deflater = pool.borrow(gzip);
+            chunk = new byte[8192];
+            if (gzip) {
+                crc = new CRC32();
+                resp.getOutputStream().write(GZIP_HEADER);
+                bytesOut += GZIP_HEADER.length;
+            }
+            return true;
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            long cpu = cpuTime();
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+            bytesIn += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                emit(deflater.deflate(chunk, 0, chunk.length, Deflater.NO_FLUSH));
+            }
+            cpuNanos += cpuTime() - cpu;
+        }
+
+        private void drain(int flush) throws IOException {
+            int n;
+            do {
+                n = deflater.deflate(chunk, 0, chunk.length, flush);
+                emit(n);
+            } while (n == chunk.length);
+        }
+
+        private void emit(int n) throws IOException {
+            if (n > 0) {
+                getResponse().getOutputStream().write(chunk, 0, n);
+                bytesOut += n;
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (deflater != null) {
+                long cpu = cpuTime();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    emit(deflater.deflate(chunk));
+                }
+                if (crc != null) {
+                    // Трейлер gzip: CRC32 и длина исходных данных по модулю 2^32, little-endian
+                    writeIntLE(chunk, 0, (int) crc.getValue());
+                    writeIntLE(chunk, 4, (int) bytesIn);
+                    emit(8);
+                }
+                cpuNanos += cpuTime() - cpu;
+                metrics.recordCompressed(bytesIn, bytesOut, cpuNanos);
+                release();
+            } else if (!passthrough && buffered > 0) {
+                metrics.recordTooSmall();
+                getResponse().setContentLengthLong(contentLength >= 0 ? contentLength : buffered);
+                getResponse().getOutputStream().write(buffer, 0, buffered);
+                buffered = 0;
+            } else if (!passthrough && contentLength >= 0) {
+                getResponse().setContentLengthLong(contentLength);
+            }
+        }
+
+        void release() {
+            if (deflater != null) {
+                pool.release(deflater, crc != null);
+                deflater = null;
+                finished = true;
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            if (!passthrough) {
+                return true;
+            }
+            try {
+                return getResponse().getOutputStream().isReady();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Асинхронные запросы {@link CompressionFilter} не оборачивает; если неблокирующий вывод все же
+         * включен через эту обертку, ответ идет несжатым прямо в поток контейнера.
+         */
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (deflater != null || buffered > 0) {
+                throw new IllegalStateException("Неблокирующий вывод включается до записи в ответ");
+            }
+            passthrough = true;
+            metrics.recordNotCompressible();
+            try {
+                if (contentLength >= 0) {
+                    getResponse().setContentLengthLong(contentLength);
+                }
+                getResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException("Поток ответа недоступен", e);
+            }
+        }
+    }
+
+    private static void writeIntLE(byte[] b, int off, int value) {
+        b[off] = (byte) value;
+        b[off + 1] = (byte) (value >> 8);
+        b[off + 2] = (byte) (value >> 16);
+        b[off + 3] = (byte) (value >> 24);
+    }
+}
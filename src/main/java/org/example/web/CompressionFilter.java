@@ -0,0 +1,114 @@
+package org.example.web;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+/**
+ * Сжатие ответов gzip/deflate. Стоит в цепочке перед фильтрами приложения, чтобы сжимать все,
+ * что они пишут; статические файлы с готовыми сжатыми копиями отдает раньше {@link StaticAssetFilter}.
+ * <p>
+ * Кодировка выбирается по Accept-Encoding с учетом q-значений; ответы короче {@code minSize} байт
+ * и несжимаемые типы (изображения, уже сжатое) отдаются как есть. Подробности потокового
+ * сжатия - в {@link CompressingResponse}.
+ */
+public class CompressionFilter implements Filter {
+
+    private static final int DEFAULT_MIN_SIZE = 1024;
+    private static final int DEFAULT_LEVEL = 6;
+
+    private int minSize;
+    private DeflaterPool pool;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        this.minSize = parseIntSafe(filterConfig.getInitParameter("minSize"), DEFAULT_MIN_SIZE);
+        int level = parseIntSafe(filterConfig.getInitParameter("level"), DEFAULT_LEVEL);
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            level = DEFAULT_LEVEL;
+        }
+        this.pool = new DeflaterPool(level, parseIntSafe(filterConfig.getInitParameter("poolSize"),
+                2 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest req = (HttpServletRequest) request;
+        String encoding = "HEAD".equals(req.getMethod()) ? null : negotiate(req.getHeader("Accept-Encoding"));
+        // Обертка завершает сжатый поток, когда цепочка вернула управление; асинхронный ответ
+        // в этот момент еще пишется, поэтому такие запросы отдаются без сжатия
+        if (encoding == null || req.isAsyncStarted() || req.isAsyncSupported()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse wrapper = new CompressingResponse((HttpServletResponse) response, encoding,
+                minSize, pool, MetricsRegistry.compression());
+        try {
+            chain.doFilter(request, wrapper);
+            wrapper.finish();
+        } finally {
+            wrapper.release();
+        }
+    }
+
+    /**
+     * Выбирает кодировку по заголовку Accept-Encoding (RFC 9110, 12.5.3).
+     * При равных q предпочитается gzip: его поддерживают все браузеры одинаково,
+     * а "deflate" исторически трактовался по-разному.
+     *
+     * @return {@code gzip}, {@code deflate} или null, если клиент не принимает ни одну из них
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzip = Math.max(gzip, q);
+                case "deflate" -> deflate = Math.max(deflate, q);
+                case "*" -> any = q;
+                default -> { }
+            }
+        }
+        // "*" относится только к кодировкам, не названным явно
+        if (gzip < 0) gzip = any;
+        if (deflate < 0) deflate = any;
+
+        if (gzip > 0 && gzip >= deflate) {
+            return CompressingResponse.GZIP;
+        }
+        return deflate > 0 ? CompressingResponse.DEFLATE : null;
+    }
+
+    private int parseIntSafe(String val, int def) {
+        try { return Integer.parseInt(val); } catch (Exception e) { return def; }
+    }
+
+    @Override
+    public void destroy() {
+        pool.close();
+    }
+}
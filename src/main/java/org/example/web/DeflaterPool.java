@@ -0,0 +1,49 @@
+package org.example.web;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Пул {@link Deflater}: каждый экземпляр держит около 256 КБ нативной памяти,
+ * которая освобождается только через {@link Deflater#end()}, поэтому создавать его
+ * на каждый ответ дорого. Для gzip нужен «сырой» deflate без заголовка zlib (nowrap),
+ * для deflate - с заголовком, так что экземпляры двух видов хранятся раздельно.
+ */
+final class DeflaterPool {
+
+    private final int level;
+    private final BlockingQueue<Deflater> raw;
+    private final BlockingQueue<Deflater> zlib;
+
+    DeflaterPool(int level, int capacity) {
+        this.level = level;
+        this.raw = new ArrayBlockingQueue<>(capacity);
+        this.zlib = new ArrayBlockingQueue<>(capacity);
+    }
+
+    Deflater borrow(boolean nowrap) {
+        Deflater deflater = (nowrap ? raw : zlib).poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    /**
+     * Возвращает экземпляр в пул; если пул полон, освобождает его память сразу.
+     */
+    void release(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+        if (!(nowrap ? raw : zlib).offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    void close() {
+        for (BlockingQueue<Deflater> queue : List.of(raw, zlib)) {
+            Deflater deflater;
+            while ((deflater = queue.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.web;
+
+import org.example.dao.api.CacheStats;
+import org.example.db.DataVersions;
+import org.example.entity.Role;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU-кэш отрисованных фрагментов страниц, ограниченный суммарным объемом HTML.
+ * <p>
+ * Ключ включает шаблон, фрагмент, роль и версии данных ({@link DataVersions}), из которых фрагмент построен,
+ * поэтому после записи в эти данные старые записи просто перестают запрашиваться и вытесняются.
+ * Кэшировать можно только фрагменты без персональных данных и без ссылок: в ссылку контейнер
+ * может дописать jsessionid текущего пользователя.
+ */
+final class FragmentCache {
+
+    private final long maxChars;
+    private final Map<String, String> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long chars;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    FragmentCache(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Строит ключ по текущим версиям данных; вызывать до загрузки данных для фрагмента.
+     */
+    static String key(String template, String fragment, Role role, String variant, DataVersions.Table... tables) {
+        StringBuilder key = new StringBuilder(template).append('#').append(fragment)
+                .append('|').append(role).append('|').append(variant);
+        for (DataVersions.Table table : tables) {
+            key.append('|').append(DataVersions.get(table));
+        }
+        return key.toString();
+    }
+
+    synchronized String get(String key) {
+        String html = entries.get(key);
+        if (html == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return html;
+    }
+
+    synchronized void put(String key, String html) {
+        if (html.length() > maxChars) {
+            return;
+        }
+        String previous = entries.put(key, html);
+        chars += html.length() - (previous != null ? previous.length() : 0);
+        Iterator<String> eldest = entries.values().iterator();
+        while (chars > maxChars && eldest.hasNext()) {
+            chars -= eldest.next().length();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Удаляет все фрагменты: ключ не зависит от шаблона, поэтому после его изменения старый HTML
+     * иначе продолжал бы отдаваться.
+     */
+    synchronized void clear() {
+        entries.clear();
+        chars = 0;
+    }
+
+    synchronized CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+}
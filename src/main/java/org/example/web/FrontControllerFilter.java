@@ -4,35 +4,89 @@ import jakarta.servlet.*;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 import org.example.dao.api.*;
+import org.example.billing.BillingEngine;
 import org.example.dao.impl.*;
+import org.example.db.ConnectionPoolStats;
 import org.example.db.DataInitializer;
+import org.example.db.DataVersions;
+import org.example.db.DatasetSpec;
 import org.example.db.JpaManager;
+import org.example.db.SqlTrace;
+import org.example.db.UnitOfWork;
 import org.example.entity.*;
 import org.example.exception.DuplicateEntryException;
-import org.example.util.PasswordUtil;
+import org.example.exception.ServiceBusyException;
+import org.example.importer.ImportReport;
+import org.example.importer.SubscriberCsvImporter;
+import org.example.metrics.CommandMetrics;
+import org.example.metrics.MetricsRegistry;
+import org.example.metrics.PrometheusWriter;
+import org.example.util.Pbkdf2PasswordHasher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.thymeleaf.IThrottledTemplateProcessor;
 import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.StandardCache;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.context.Context;
 import org.thymeleaf.context.WebContext;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresolver.WebApplicationTemplateResolver;
 import org.thymeleaf.web.servlet.JakartaServletWebApplication;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FrontControllerFilter implements Filter {
 
     private static final Logger logger = LoggerFactory.getLogger(FrontControllerFilter.class);
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private static final int DEFAULT_IMPORT_BATCH_SIZE = 500;
+    private static final int MAX_IMPORT_BATCH_SIZE = 5000;
+
+    private static final int DEFAULT_BILLING_PARTITION_SIZE = 1000;
+
+    private static final int DEFAULT_LOADER_THREADS = 16;
+    private static final long DEFAULT_DETAILS_TIMEOUT_MS = 3_000;
+
+    private static final int DEFAULT_DATASET_SUBSCRIBERS = 10_000;
+    private static final int DEFAULT_DATASET_SERVICES = 50;
+    private static final int DEFAULT_DATASET_INVOICES = 6;
+    private static final long DEFAULT_DATASET_SEED = 42;
+
+    private static final String TEMPLATES_PATH = "/WEB-INF/templates/";
+    private static final String TEMPLATE_SUFFIX = ".html";
+    private static final int DEFAULT_TEMPLATE_CACHE_SIZE = 200;
+    private static final int DEFAULT_FRAGMENT_CACHE_KB = 4096;
+
+    private static final int DEFAULT_PASSWORD_QUEUE = 64;
+    private static final long DEFAULT_PASSWORD_TIMEOUT_MS = 5_000;
+    private static final int BUSY_RETRY_AFTER_SECONDS = 2;
+
+    private static final String CONDITIONAL_CACHE_CONTROL = "private, no-cache";
+
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final int STREAM_CHUNK_CHARS = 16 * 1024;
+
     private TemplateEngine templateEngine;
     private JakartaServletWebApplication application;
 
@@ -40,24 +94,163 @@ public class FrontControllerFilter implements Filter {
     private ServiceDao serviceDao;
     private InvoiceDao invoiceDao;
     private UserDao userDao;
+    private BillingEngine billingEngine;
+    private ParallelLoader parallelLoader;
+    private TemplateWatcher templateWatcher;
+    private FragmentCache fragmentCache;
+    // Меняется при изменении шаблонов в режиме разработки и входит в ETag: новая разметка - новый ответ
+    private final AtomicInteger templateGeneration = new AtomicInteger();
+    private PrincipalStore principalStore;
+    private PasswordVerifier passwordVerifier;
+
+    private boolean streamingReports;
+    private boolean conditionalGet;
+    private int importBatchSize;
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
+        this.principalStore = PrincipalStore.get(filterConfig.getServletContext());
+        // Хранилище входа выключает общий кэш EclipseLink до первого обращения к JpaManager;
+        // если JpaManager уже был инициализирован раньше, узлы разошлись бы в данных - не запускаемся
+        if (principalStore.isMultiNode() && JpaManager.isSharedCacheEnabled()) {
+            throw new ServletException("sessionMode=signed требует выключенного общего кэша EclipseLink: "
+                    + "задайте " + JpaManager.SHARED_CACHE_PROPERTY + "=false.");
+        }
+        this.conditionalGet = nodeLocalCache(filterConfig, "conditionalGet");
+
         this.subscriberDao = new SubscriberDaoImpl();
-        this.serviceDao = new ServiceDaoImpl();
+        this.serviceDao = new ServiceDaoImpl(nodeLocalCache(filterConfig, "catalogCache"));
         this.invoiceDao = new InvoiceDaoImpl();
         this.userDao = new UserDaoImpl();
 
+        this.passwordVerifier = new PasswordVerifier(
+                new Pbkdf2PasswordHasher(parseIntSafe(filterConfig.getInitParameter("passwordIterations"),
+                        Pbkdf2PasswordHasher.DEFAULT_ITERATIONS)),
+                parseIntSafe(filterConfig.getInitParameter("passwordThreads"),
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2)),
+                parseIntSafe(filterConfig.getInitParameter("passwordQueue"), DEFAULT_PASSWORD_QUEUE),
+                parseLongSafe(filterConfig.getInitParameter("passwordTimeoutMs"), DEFAULT_PASSWORD_TIMEOUT_MS));
+        this.streamingReports = !"false".equalsIgnoreCase(filterConfig.getInitParameter("streamingReports"));
+        this.importBatchSize = parseIntSafe(filterConfig.getInitParameter("importBatchSize"), DEFAULT_IMPORT_BATCH_SIZE);
+
+        this.billingEngine = new BillingEngine(new BillingDaoImpl(),
+                parseIntSafe(filterConfig.getInitParameter("billingParallelism"), Runtime.getRuntime().availableProcessors()),
+                parseIntSafe(filterConfig.getInitParameter("billingPartitionSize"), DEFAULT_BILLING_PARTITION_SIZE));
+
+        if (!"false".equalsIgnoreCase(filterConfig.getInitParameter("parallelDetails"))) {
+            this.parallelLoader = new ParallelLoader(
+                    parseIntSafe(filterConfig.getInitParameter("loaderThreads"), DEFAULT_LOADER_THREADS),
+                    parseLongSafe(filterConfig.getInitParameter("detailsTimeoutMs"), DEFAULT_DETAILS_TIMEOUT_MS));
+        }
+
         this.application = JakartaServletWebApplication.buildApplication(filterConfig.getServletContext());
         final WebApplicationTemplateResolver templateResolver = new WebApplicationTemplateResolver(this.application);
         templateResolver.setTemplateMode(TemplateMode.HTML);
-        templateResolver.setPrefix("/WEB-INF/templates/");
-        templateResolver.setSuffix(".html");
+        templateResolver.setPrefix(TEMPLATES_PATH);
+        templateResolver.setSuffix(TEMPLATE_SUFFIX);
         templateResolver.setCharacterEncoding("UTF-8");
-        templateResolver.setCacheable(false);
+
+        // Разобранные шаблоны кэшируются в обоих режимах; в режиме разработки кэш сбрасывается при правке файлов
+        StandardCacheManager cacheManager = new StandardCacheManager();
+        cacheManager.setTemplateCacheMaxSize(
+                parseIntSafe(filterConfig.getInitParameter("templateCacheSize"), DEFAULT_TEMPLATE_CACHE_SIZE));
+        cacheManager.setTemplateCacheEnableCounters(true);
+        long cacheTtlMs = parseLongSafe(filterConfig.getInitParameter("templateCacheTtlMs"), 0);
+        if (cacheTtlMs > 0) {
+            templateResolver.setCacheTTLMs(cacheTtlMs);
+        }
+        templateResolver.setCacheable(true);
 
         this.templateEngine = new TemplateEngine();
         this.templateEngine.setTemplateResolver(templateResolver);
+        this.templateEngine.setCacheManager(cacheManager);
+        this.templateEngine.setLinkBuilder(new AssetLinkBuilder(
+                StaticAssets.get(filterConfig.getServletContext()), filterConfig.getServletContext().getContextPath()));
+
+        if ("development".equalsIgnoreCase(filterConfig.getInitParameter("templateCache"))) {
+            startTemplateWatcher(filterConfig.getServletContext(), templateResolver);
+        }
+        preparseTemplates(filterConfig.getServletContext());
+
+        if (nodeLocalCache(filterConfig, "fragmentCache")) {
+            this.fragmentCache = new FragmentCache(1024L
+                    * parseIntSafe(filterConfig.getInitParameter("fragmentCacheMaxKb"), DEFAULT_FRAGMENT_CACHE_KB));
+        }
+    }
+
+    private void startTemplateWatcher(ServletContext servletContext, WebApplicationTemplateResolver templateResolver) {
+        String realPath = servletContext.getRealPath(TEMPLATES_PATH);
+        if (realPath != null) {
+            try {
+                templateWatcher = TemplateWatcher.start(Path.of(realPath), this::onTemplatesChanged);
+                return;
+            } catch (IOException e) {
+                logger.warn("Не удалось следить за каталогом шаблонов {}", realPath, e);
+            }
+        }
+        // Приложение развернуто без распаковки - отслеживать нечего, шаблоны читаются на каждый запрос
+        logger.info("Кэш шаблонов отключен: каталог шаблонов недоступен в файловой системе.");
+        templateResolver.setCacheable(false);
+    }
+
+    /**
+     * Включен ли кэш, который опирается на версии данных в памяти узла (по умолчанию да).
+     * При хранилище входа для нескольких узлов такие кэши выключаются независимо от параметра.
+     */
+    private boolean nodeLocalCache(FilterConfig filterConfig, String param) {
+        if ("false".equalsIgnoreCase(filterConfig.getInitParameter(param))) {
+            return false;
+        }
+        if (principalStore.isMultiNode()) {
+            logger.info("{} отключен: версии данных не разделяются между узлами (sessionMode=signed).", param);
+            return false;
+        }
+        return true;
+    }
+
+    private void onTemplatesChanged() {
+        templateEngine.clearTemplateCache();
+        FragmentCache cache = fragmentCache;
+        if (cache != null) {
+            cache.clear();
+        }
+        templateGeneration.incrementAndGet();
+    }
+
+    /**
+     * Разбирает все шаблоны при старте: ошибки разметки видны сразу, а первый запрос к странице
+     * не платит за чтение и разбор. Throttled-обработка кладет разобранный шаблон в кэш
+     * еще до вычисления выражений, поэтому модель для этого не нужна.
+     */
+    private void preparseTemplates(ServletContext servletContext) {
+        Set<String> paths = servletContext.getResourcePaths(TEMPLATES_PATH);
+        if (paths == null) {
+            return;
+        }
+        int parsed = 0;
+        for (String path : paths) {
+            if (!path.endsWith(TEMPLATE_SUFFIX)) {
+                continue;
+            }
+            String name = path.substring(TEMPLATES_PATH.length(), path.length() - TEMPLATE_SUFFIX.length());
+            try {
+                templateEngine.processThrottled(name, new Context());
+                parsed++;
+            } catch (Exception e) {
+                logger.error("Ошибка разбора шаблона {}", name, e);
+            }
+        }
+        logger.info("Предварительно разобрано шаблонов: {}", parsed);
+    }
+
+    private CacheStats getTemplateCacheStats() {
+        ICache<?, ?> cache = templateEngine.getCacheManager().getTemplateCache();
+        long reloads = templateWatcher != null ? templateWatcher.getReloads() : 0;
+        if (cache instanceof StandardCache) {
+            StandardCache<?, ?> standard = (StandardCache<?, ?>) cache;
+            return new CacheStats(standard.getHitCount(), standard.getMissCount(), reloads, standard.size());
+        }
+        return new CacheStats(0, 0, reloads, 0);
     }
 
     @Override
@@ -70,7 +263,7 @@ public class FrontControllerFilter implements Filter {
 
         String path = req.getRequestURI().substring(req.getContextPath().length());
 
-        if (path.startsWith("/css/") || path.startsWith("/js/") || path.startsWith("/images/") || path.equals("/favicon.ico")) {
+        if (StaticAssets.isStaticPath(path)) {
             chain.doFilter(request, response);
             return;
         }
@@ -86,6 +279,11 @@ public class FrontControllerFilter implements Filter {
             return;
         }
 
+        long started = System.nanoTime();
+        CommandMetrics.Outcome outcome = null;
+        SqlTrace sql = SqlTrace.begin(command);
+        // Все обращения DAO в рамках запроса идут через один EntityManager и одно соединение
+        UnitOfWork.begin();
         try {
             if (req.getMethod().equalsIgnoreCase("GET")) {
                 processGet(command, req, resp);
@@ -93,14 +291,53 @@ public class FrontControllerFilter implements Filter {
                 processPost(command, req, resp);
             }
         } catch (Exception e) {
+            outcome = CommandMetrics.Outcome.ERROR;
             handleError(req, resp, e);
+        } finally {
+            UnitOfWork.end();
+            SqlTrace.end();
+            CommandMetrics metrics = MetricsRegistry.command(command);
+            metrics.record(outcome != null ? outcome : outcomeOf(resp), System.nanoTime() - started);
+            metrics.recordSql(sql.getStatements(), sql.getNanos(), sql.getSuspectedNPlusOne());
+            if (logger.isDebugEnabled()) {
+                logger.debug("Команда {}: SQL-запросов {}, время SQL {} мс", command, sql.getStatements(),
+                        sql.getNanos() / 1_000_000);
+            }
+        }
+    }
+
+    private static CommandMetrics.Outcome outcomeOf(HttpServletResponse resp) {
+        int status = resp.getStatus();
+        if (status >= 400) {
+            return CommandMetrics.Outcome.ERROR;
+        }
+        if (status == HttpServletResponse.SC_NOT_MODIFIED) {
+            return CommandMetrics.Outcome.NOT_MODIFIED;
+        }
+        if (status >= 300) {
+            return CommandMetrics.Outcome.REDIRECTED;
         }
+        return CommandMetrics.Outcome.RENDERED;
     }
 
     private void processGet(String command, HttpServletRequest req, HttpServletResponse resp) throws Exception {
+        // Проверяется до buildContext: ответ 304 не трогает ни БД, ни cookie посещений
+        if (conditionalGet && isNotModified(command, req)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            resp.setHeader("Cache-Control", CONDITIONAL_CACHE_CONTROL);
+            return;
+        }
+
         WebContext ctx = buildContext(req, resp);
         String templateName = null;
 
+        // Версии читаются до загрузки данных: запись, случившаяся во время рендеринга, сменит ETag
+        String etag = conditionalGet ? computeEtag(command, req, (Integer) ctx.getVariable("visitCount")) : null;
+        if (etag != null) {
+            resp.setHeader("ETag", etag);
+            resp.setHeader("Cache-Control", CONDITIONAL_CACHE_CONTROL);
+        }
+
         switch (command) {
             case "home":
                 templateName = "home";
@@ -112,25 +349,40 @@ public class FrontControllerFilter implements Filter {
                 templateName = "register";
                 break;
             case "logout":
-                req.getSession().invalidate();
+                principalStore.logout(req, resp);
                 resp.sendRedirect(req.getContextPath() + "/app?command=home");
                 return;
 
             case "showAllSubscribers":
-                ctx.setVariable("subscribers", subscriberDao.findAll());
+                handleShowAllSubscribers(req, ctx);
                 templateName = "subscribers";
                 break;
             case "showAllServices":
-                ctx.setVariable("services", serviceDao.findAll());
+                handleShowAllServices(req, ctx);
                 templateName = "services";
                 break;
             case "showUnpaidInvoices":
-                ctx.setVariable("invoices", invoiceDao.findUnpaid());
+                if (streamingReports) {
+                    processUnpaidInvoicesStreaming(ctx, resp);
+                    return;
+                }
+                List<Invoice> unpaid = invoiceDao.findUnpaid(InvoiceDao.WITH_SUBSCRIBER);
+                ctx.setVariable("invoices", unpaid);
+                ctx.setVariable("hasInvoices", !unpaid.isEmpty());
                 templateName = "unpaid-invoices";
                 break;
             case "showAddSubscriberForm":
                 templateName = "add-subscriber";
                 break;
+            case "showBilling":
+                ctx.setVariable("progress", billingEngine.getProgress());
+                ctx.setVariable("defaultPeriod", YearMonth.now().toString());
+                templateName = "billing";
+                break;
+            case "showImportForm":
+                ctx.setVariable("batchSize", importBatchSize);
+                templateName = "import-subscribers";
+                break;
             case "details":
                 handleDetails(req, ctx);
                 templateName = "subscriber-details";
@@ -145,11 +397,28 @@ public class FrontControllerFilter implements Filter {
                 if (payId > 0) invoiceDao.pay(payId);
                 resp.sendRedirect(req.getContextPath() + "/app?command=showUnpaidInvoices");
                 return;
+            case "stats":
+                resp.setContentType("text/plain;charset=UTF-8");
+                resp.getWriter().println("connectionPool: " + JpaManager.getPoolStats());
+                resp.getWriter().println("serviceCatalogCache: " + serviceDao.getCatalogCacheStats());
+                resp.getWriter().println("templateCache: " + getTemplateCacheStats());
+                if (fragmentCache != null) {
+                    resp.getWriter().println("fragmentCache: " + fragmentCache.stats());
+                }
+                return;
+            case "metrics":
+                writeMetrics(resp);
+                return;
             case "initData":
-                DataInitializer.insertInitialData(subscriberDao, serviceDao, invoiceDao, userDao);
+                // Хеш считается заранее, в пуле проверки паролей и с настроенным числом итераций
+                DataInitializer.insertInitialData(subscriberDao, serviceDao, invoiceDao, userDao,
+                        passwordVerifier.hash(DataInitializer.ADMIN_PASSWORD));
                 ctx.setVariable("message", "База данных сброшена. Admin: admin/admin");
                 templateName = "init-success";
                 break;
+            case "generateData":
+                templateName = handleGenerateData(req, ctx);
+                break;
             default:
                 resp.sendRedirect(req.getContextPath() + "/app?command=home");
                 return;
@@ -160,6 +429,22 @@ public class FrontControllerFilter implements Filter {
         }
     }
 
+    private void processUnpaidInvoicesStreaming(WebContext ctx, HttpServletResponse resp) throws IOException {
+        try (ResultStream<Invoice> invoices = invoiceDao.streamUnpaid(InvoiceDao.WITH_SUBSCRIBER, STREAM_FETCH_SIZE)) {
+            ctx.setVariable("invoices", invoices);
+            ctx.setVariable("hasInvoices", invoices.hasNext());
+
+            // Шаблон отдается порциями: th:each тянет строки из курсора по мере вывода,
+            // а каждая порция сразу сбрасывается клиенту
+            IThrottledTemplateProcessor processor = templateEngine.processThrottled("unpaid-invoices", ctx);
+            PrintWriter writer = resp.getWriter();
+            while (!processor.isFinished()) {
+                processor.process(STREAM_CHUNK_CHARS, writer);
+                writer.flush();
+            }
+        }
+    }
+
     private void processPost(String command, HttpServletRequest req, HttpServletResponse resp) throws Exception {
         try {
             switch (command) {
@@ -175,10 +460,24 @@ public class FrontControllerFilter implements Filter {
                 case "linkService":
                     handleLinkService(req, resp);
                     break;
+                case "importSubscribers":
+                    handleImportSubscribers(req, resp);
+                    break;
+                case "runBilling":
+                    handleRunBilling(req, resp);
+                    break;
                 default:
                     resp.sendRedirect(req.getContextPath() + "/app?command=home");
                     break;
             }
+        } catch (ServiceBusyException e) {
+            // Волна входов не должна занимать потоки запросов: отвечаем сразу, клиент повторит попытку
+            logger.warn("Команда {} отклонена: {}", command, e.getMessage());
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            resp.setHeader("Retry-After", String.valueOf(BUSY_RETRY_AFTER_SECONDS));
+            WebContext ctx = buildContext(req, resp);
+            ctx.setVariable("errorMessage", "Сервер перегружен, повторите попытку через несколько секунд.");
+            templateEngine.process("register".equals(command) ? "register" : "login", ctx, resp.getWriter());
         } catch (Exception e) {
             if (isDuplicateEntry(e)) {
                 WebContext ctx = buildContext(req, resp);
@@ -218,9 +517,13 @@ public class FrontControllerFilter implements Filter {
         String pass = req.getParameter("password");
 
         User user = userDao.findByLogin(login);
+        PasswordVerifier.Result result = passwordVerifier.verify(pass, user != null ? user.getPassword() : null);
 
-        if (user != null && user.getPassword().equals(PasswordUtil.hash(pass))) {
-            req.getSession().setAttribute("user", user);
+        if (user != null && result.matches()) {
+            if (result.rehash() != null) {
+                upgradePassword(user, result.rehash());
+            }
+            principalStore.login(req, resp, user);
             resp.sendRedirect(req.getContextPath() + "/app?command=home");
         } else {
             WebContext ctx = buildContext(req, resp);
@@ -229,6 +532,20 @@ public class FrontControllerFilter implements Filter {
         }
     }
 
+    /**
+     * Сохраняет хеш, пересчитанный при входе по устаревшему алгоритму или параметрам.
+     * Ошибка сохранения не мешает входу: хеш будет пересчитан при следующем.
+     */
+    private void upgradePassword(User user, String rehash) {
+        try {
+            userDao.updatePassword(user.getId(), rehash);
+            user.setPassword(rehash);
+            logger.info("Хеш пароля пользователя {} обновлен", user.getLogin());
+        } catch (RuntimeException e) {
+            logger.warn("Не удалось обновить хеш пароля пользователя {}", user.getLogin(), e);
+        }
+    }
+
     private void handleRegistration(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         String login = req.getParameter("login");
         String pass = req.getParameter("password");
@@ -237,7 +554,7 @@ public class FrontControllerFilter implements Filter {
             throw new DuplicateEntryException("Логин и пароль обязательны.");
         }
 
-        String hashedPassword = PasswordUtil.hash(pass);
+        String hashedPassword = passwordVerifier.hash(pass);
 
         User user = new User(login, hashedPassword, Role.USER);
 
@@ -246,7 +563,7 @@ public class FrontControllerFilter implements Filter {
         }
 
         userDao.add(user);
-        req.getSession().setAttribute("user", user);
+        principalStore.login(req, resp, user);
         resp.sendRedirect(req.getContextPath() + "/app?command=home");
     }
 
@@ -259,6 +576,49 @@ public class FrontControllerFilter implements Filter {
         resp.sendRedirect(req.getContextPath() + "/app?command=showAllSubscribers");
     }
 
+    private void handleImportSubscribers(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        WebContext ctx = buildContext(req, resp);
+
+        InputStream csv;
+        int batchSize = importBatchSize;
+        if (MultipartFileStream.isMultipart(req)) {
+            MultipartFileStream multipart = MultipartFileStream.of(req);
+            csv = multipart.openPart("file");
+            batchSize = parseIntSafe(multipart.getFields().get("batchSize"), importBatchSize);
+        } else {
+            // Тело запроса - сам CSV (удобно для curl --data-binary)
+            csv = req.getInputStream();
+            batchSize = parseIntSafe(req.getParameter("batchSize"), importBatchSize);
+        }
+        batchSize = Math.min(Math.max(batchSize, 1), MAX_IMPORT_BATCH_SIZE);
+        ctx.setVariable("batchSize", batchSize);
+        if (batchSize > JpaManager.getJdbcBatchSize()) {
+            logger.info("Пачка импорта из {} строк уйдет в БД JDBC-пачками по {} (jdbc.batchSize)",
+                    batchSize, JpaManager.getJdbcBatchSize());
+        }
+
+        if (csv == null) {
+            ctx.setVariable("errorMessage", "Файл для импорта не выбран.");
+        } else {
+            ImportReport report = new SubscriberCsvImporter(subscriberDao, batchSize).importCsv(csv);
+            ctx.setVariable("report", report);
+        }
+        templateEngine.process("import-subscribers", ctx, resp.getWriter());
+    }
+
+    private void handleRunBilling(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        YearMonth period;
+        try {
+            period = YearMonth.parse(req.getParameter("period"));
+        } catch (Exception e) {
+            period = YearMonth.now();
+        }
+        if (billingEngine.start(period) == null) {
+            principalStore.setFlashError(req, resp, "Биллинг уже выполняется, дождитесь завершения.");
+        }
+        resp.sendRedirect(req.getContextPath() + "/app?command=showBilling");
+    }
+
     private void handleLinkService(HttpServletRequest req, HttpServletResponse resp) throws IOException {
         int subId = parseIntSafe(req.getParameter("subscriberId"), -1);
         int srvId = parseIntSafe(req.getParameter("serviceId"), -1);
@@ -266,20 +626,239 @@ public class FrontControllerFilter implements Filter {
         resp.sendRedirect(req.getContextPath() + "/app?command=details&id=" + subId);
     }
 
+    private void handleShowAllSubscribers(HttpServletRequest req, WebContext ctx) {
+        SubscriberSort sort = SubscriberSort.fromParam(req.getParameter("sort"));
+        int size = Math.min(Math.max(parseIntSafe(req.getParameter("size"), DEFAULT_PAGE_SIZE), 1), MAX_PAGE_SIZE);
+
+        String before = req.getParameter("before");
+        boolean backward = before != null && !before.isBlank();
+        String cursor = backward ? before : req.getParameter("after");
+
+        KeysetPage<Subscriber> page = subscriberDao.findPage(sort, cursor, backward, size);
+        ctx.setVariable("page", page);
+        ctx.setVariable("subscribers", page.getItems());
+        ctx.setVariable("sort", sort.getParam());
+        ctx.setVariable("pageSize", size);
+    }
+
+    /**
+     * Страница подтверждается, если ее ETag для текущих версий данных совпадает с присланным браузером.
+     * Ожидающее flash-сообщение должно быть показано, поэтому в этом случае страница рисуется заново.
+     */
+    private boolean isNotModified(String command, HttpServletRequest req) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        if (principalStore.hasFlashError(req)) {
+            return false;
+        }
+        String etag = computeEtag(command, req, parseIntSafe(cookieValue(req, "visitCount"), 0));
+        if (etag == null) {
+            return false;
+        }
+        // Слабое сравнение (RFC 9110): префикс W/ не учитывается
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(opaque) || candidate.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Слабый ETag страниц, которые чаще всего обновляют: версии данных, из которых строится страница,
+     * пользователь (от роли зависят доступные действия) и счетчик посещений из cookie.
+     * При отрисовке берется новое значение счетчика - то, что браузер пришлет в следующем запросе,
+     * поэтому повторное обновление страницы совпадает с ETag и не увеличивает счетчик.
+     *
+     * @return null для команд без условных запросов
+     */
+    private String computeEtag(String command, HttpServletRequest req, int visitCount) {
+        StringBuilder tag = new StringBuilder(command).append('-').append(DataVersions.epoch())
+                .append('.').append(templateGeneration.get()).append('-');
+        switch (command) {
+            case "showAllSubscribers":
+                tag.append(DataVersions.get(DataVersions.Table.SUBSCRIBERS));
+                break;
+            case "showUnpaidInvoices":
+                tag.append(DataVersions.get(DataVersions.Table.INVOICES))
+                        .append('.').append(DataVersions.get(DataVersions.Table.SUBSCRIBERS));
+                break;
+            case "details":
+                tag.append(DataVersions.subscriber(parseIntSafe(req.getParameter("id"), -1)))
+                        .append('.').append(DataVersions.get(DataVersions.Table.SERVICES));
+                break;
+            default:
+                return null;
+        }
+        User user = principalStore.currentUser(req);
+        String principal = user != null ? user.getLogin() + ':' + user.getRole() : "guest";
+        tag.append('-').append(Integer.toHexString(principal.hashCode())).append('-').append(visitCount);
+        return "W/\"" + tag + '"';
+    }
+
+    private static String cookieValue(HttpServletRequest req, String name) {
+        Cookie[] cookies = req.getCookies();
+        if (cookies != null) {
+            for (Cookie c : cookies) {
+                if (name.equals(c.getName())) {
+                    return c.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void handleShowAllServices(HttpServletRequest req, WebContext ctx) {
+        if (fragmentCache == null) {
+            ctx.setVariable("services", serviceDao.findAll());
+            return;
+        }
+        // Таблица каталога одинакова для всех: при попадании в кэш ни БД, ни шаблон не нужны
+        String key = FragmentCache.key("services", "catalog", roleOf(req), "", DataVersions.Table.SERVICES);
+        String html = fragmentCache.get(key);
+        if (html == null) {
+            ctx.setVariable("services", serviceDao.findAll());
+            html = renderFragment(key, "services", "catalog", ctx);
+        }
+        ctx.setVariable("catalogHtml", html);
+    }
+
     private void handleDetails(HttpServletRequest req, WebContext ctx) {
         int id = parseIntSafe(req.getParameter("id"), -1);
-        Subscriber sub = subscriberDao.findById(id);
-        if (sub != null) {
-            ctx.setVariable("subscriber", sub);
-            ctx.setVariable("services", serviceDao.findBySubscriberId(id));
-            ctx.setVariable("invoices", invoiceDao.findBySubscriberId(id));
-            ctx.setVariable("allServices", serviceDao.findAll());
+        Role role = roleOf(req);
+
+        // Ключи строятся до загрузки данных, см. DataVersions
+        String servicesKey = null;
+        String optionsKey = null;
+        String optionsHtml = null;
+        if (fragmentCache != null) {
+            servicesKey = FragmentCache.key("subscriber-details", "subscriberServices", role, String.valueOf(id),
+                    DataVersions.Table.SERVICES, DataVersions.Table.SUBSCRIPTIONS);
+            if (role == Role.ADMIN) {
+                optionsKey = FragmentCache.key("subscriber-details", "serviceOptions", role, "",
+                        DataVersions.Table.SERVICES);
+                optionsHtml = fragmentCache.get(optionsKey);
+            }
+        }
+        // Каталог нужен только для формы подключения услуги, которую видит администратор
+        boolean needCatalog = role == Role.ADMIN && optionsHtml == null;
+
+        SubscriberDetailsView details;
+        List<Service> allServices = null;
+        if (parallelLoader != null && needCatalog) {
+            // Проекция абонента и каталог услуг независимы - грузим одновременно,
+            // время ответа определяется более медленным из запросов, а не их суммой
+            Future<SubscriberDetailsView> detailsTask = parallelLoader.load(() -> subscriberDao.findDetails(id));
+            Future<List<Service>> catalogTask = parallelLoader.load(() -> serviceDao.findAll());
+            parallelLoader.await(detailsTask, catalogTask);
+            details = ParallelLoader.result(detailsTask);
+            allServices = ParallelLoader.result(catalogTask);
+        } else {
+            details = subscriberDao.findDetails(id);
+            if (details != null && needCatalog) {
+                allServices = serviceDao.findAll();
+            }
+        }
+
+        if (details != null) {
+            ctx.setVariable("subscriber", details);
+            ctx.setVariable("services", details.getServices());
+            ctx.setVariable("invoices", details.getInvoices());
+            ctx.setVariable("allServices", allServices);
+
+            if (fragmentCache != null) {
+                String servicesHtml = fragmentCache.get(servicesKey);
+                if (servicesHtml == null) {
+                    servicesHtml = renderFragment(servicesKey, "subscriber-details", "subscriberServices", ctx);
+                }
+                ctx.setVariable("subscriberServicesHtml", servicesHtml);
+                if (optionsKey != null) {
+                    if (optionsHtml == null) {
+                        optionsHtml = renderFragment(optionsKey, "subscriber-details", "serviceOptions", ctx);
+                    }
+                    ctx.setVariable("serviceOptionsHtml", optionsHtml);
+                }
+            }
         }
     }
 
-    private WebContext buildContext(HttpServletRequest req, HttpServletResponse resp) {
-        HttpSession session = req.getSession(true);
+    private String renderFragment(String key, String template, String fragment, WebContext ctx) {
+        String html = templateEngine.process(template, Set.of(fragment), ctx);
+        fragmentCache.put(key, html);
+        return html;
+    }
 
+    private Role roleOf(HttpServletRequest req) {
+        User user = principalStore.currentUser(req);
+        return user != null ? user.getRole() : Role.GUEST;
+    }
+
+    private String handleGenerateData(HttpServletRequest req, WebContext ctx) {
+        DatasetSpec spec = new DatasetSpec(
+                parseIntSafe(req.getParameter("subscribers"), DEFAULT_DATASET_SUBSCRIBERS),
+                parseIntSafe(req.getParameter("services"), DEFAULT_DATASET_SERVICES),
+                parseIntSafe(req.getParameter("invoices"), DEFAULT_DATASET_INVOICES),
+                parseLongSafe(req.getParameter("seed"), DEFAULT_DATASET_SEED));
+        long started = System.currentTimeMillis();
+        long rows = DataInitializer.generateDataset(serviceDao, spec,
+                passwordVerifier.hash(DataInitializer.ADMIN_PASSWORD));
+        ctx.setVariable("message", "Сгенерировано строк: " + rows + " за "
+                + (System.currentTimeMillis() - started) + " мс (" + spec + "). Admin: admin/admin");
+        return "init-success";
+    }
+
+    private void writeMetrics(HttpServletResponse resp) throws IOException {
+        resp.setContentType(PrometheusWriter.CONTENT_TYPE);
+        PrintWriter out = resp.getWriter();
+        PrometheusWriter metrics = new PrometheusWriter(out);
+        metrics.writeCommands(MetricsRegistry.getCommands());
+
+        ConnectionPoolStats pool = JpaManager.getPoolStats();
+        metrics.gauge("telecom_db_pool_active_connections", "Занятые соединения пула.", pool.getActive());
+        metrics.gauge("telecom_db_pool_idle_connections", "Свободные соединения пула.", pool.getIdle());
+        metrics.gauge("telecom_db_pool_max_connections", "Максимальный размер пула.", pool.getMaxSize());
+        metrics.gauge("telecom_db_pool_pending_threads", "Потоки, ожидающие соединение.", pool.getWaiting());
+        metrics.counter("telecom_db_pool_timeouts_total", "Таймауты получения соединения.", pool.getTimeouts());
+        metrics.histogram("telecom_db_pool_acquire_seconds", "Время получения соединения из пула.",
+                pool.getAcquireLatency());
+        metrics.histogram("telecom_db_pool_usage_seconds", "Время удержания соединения.", pool.getUsageTime());
+
+        CacheStats cache = serviceDao.getCatalogCacheStats();
+        metrics.counter("telecom_service_cache_hits_total", "Попадания в кэш каталога услуг.", cache.getHits());
+        metrics.counter("telecom_service_cache_misses_total", "Промахи кэша каталога услуг.", cache.getMisses());
+        metrics.gauge("telecom_service_cache_size", "Записей в кэше каталога услуг.", cache.getSize());
+
+        CacheStats templates = getTemplateCacheStats();
+        metrics.counter("telecom_template_cache_hits_total", "Попадания в кэш разобранных шаблонов.", templates.getHits());
+        metrics.counter("telecom_template_cache_misses_total", "Промахи кэша разобранных шаблонов.", templates.getMisses());
+        metrics.counter("telecom_template_cache_reloads_total", "Сбросы кэша шаблонов после правки файлов.",
+                templates.getInvalidations());
+        metrics.gauge("telecom_template_cache_size", "Шаблонов в кэше.", templates.getSize());
+
+        if (fragmentCache != null) {
+            CacheStats fragments = fragmentCache.stats();
+            metrics.counter("telecom_fragment_cache_hits_total", "Попадания в кэш фрагментов.", fragments.getHits());
+            metrics.counter("telecom_fragment_cache_misses_total", "Промахи кэша фрагментов.", fragments.getMisses());
+            metrics.counter("telecom_fragment_cache_evictions_total", "Вытеснения из кэша фрагментов.",
+                    fragments.getInvalidations());
+            metrics.gauge("telecom_fragment_cache_size", "Фрагментов в кэше.", fragments.getSize());
+        }
+        metrics.writeCompression(MetricsRegistry.compression());
+        metrics.gauge("telecom_password_hash_active", "Хеши паролей, вычисляемые сейчас.", passwordVerifier.getActive());
+        metrics.gauge("telecom_password_hash_queue_depth", "Проверки паролей в очереди.", passwordVerifier.getQueueDepth());
+        metrics.counter("telecom_password_hash_rejected_total", "Проверки паролей, отклоненные из-за перегрузки.",
+                passwordVerifier.getRejected());
+        out.flush();
+    }
+
+    private WebContext buildContext(HttpServletRequest req, HttpServletResponse resp) {
         int visitCount = 0;
         String lastVisit = "Never";
 
@@ -318,13 +897,12 @@ public class FrontControllerFilter implements Filter {
         WebContext ctx = new WebContext(this.application.buildExchange(req, resp));
         ctx.setVariable("visitCount", visitCount);
         ctx.setVariable("lastVisit", lastVisit);
-        ctx.setVariable("session", session);
-        ctx.setVariable("currentUser", session.getAttribute("user"));
+        // Сессия только читается: гостевые запросы ее не создают
+        ctx.setVariable("currentUser", principalStore.currentUser(req));
 
-        String flashError = (String) session.getAttribute("flashErrorMessage");
+        String flashError = principalStore.takeFlashError(req, resp);
         if (flashError != null) {
             ctx.setVariable("errorMessage", flashError);
-            session.removeAttribute("flashErrorMessage");
         }
 
         return ctx;
@@ -332,6 +910,11 @@ public class FrontControllerFilter implements Filter {
 
     private void handleError(HttpServletRequest req, HttpServletResponse resp, Exception e) throws ServletException, IOException {
         logger.error("Error", e);
+        // Страница ошибки не должна подтверждаться ETag'ом страницы, которую не удалось построить
+        if (!resp.isCommitted()) {
+            resp.setHeader("ETag", null);
+            resp.setHeader("Cache-Control", "no-store");
+        }
         req.setAttribute("errorMessage", e.getMessage());
         req.getRequestDispatcher("/error.html").forward(req, resp);
     }
@@ -340,5 +923,19 @@ public class FrontControllerFilter implements Filter {
         try { return Integer.parseInt(val); } catch (Exception e) { return def; }
     }
 
-    @Override public void destroy() { JpaManager.getEntityManager().close(); }
+    private long parseLongSafe(String val, long def) {
+        try { return Long.parseLong(val); } catch (Exception e) { return def; }
+    }
+
+    @Override public void destroy() {
+        billingEngine.shutdown();
+        passwordVerifier.shutdown();
+        if (parallelLoader != null) {
+            parallelLoader.shutdown();
+        }
+        if (templateWatcher != null) {
+            templateWatcher.close();
+        }
+        JpaManager.shutdown();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,225 @@
+package org.example.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Потоковое чтение файла из тела multipart/form-data без буферизации на диске.
+ * Текстовые поля, стоящие в форме перед файлом, собираются в {@link #getFields()}.
+ */
+final class MultipartFileStream {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LINE = 8 * 1024;
+    private static final int MAX_FIELD = 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private final Map<String, String> fields = new HashMap<>();
+    private int pos;
+    private int limit;
+    private boolean exhausted;
+    private boolean partDone;
+
+    private MultipartFileStream(InputStream in, String boundary) {
+        // Первый разделитель идет без CRLF в начале тела - добавляем его, чтобы все разделители были одинаковыми
+        this.in = new SequenceInputStream(new ByteArrayInputStream(CRLF), in);
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    static boolean isMultipart(HttpServletRequest req) {
+        String type = req.getContentType();
+        return type != null && type.toLowerCase(Locale.ROOT).startsWith("multipart/form-data");
+    }
+
+    static MultipartFileStream of(HttpServletRequest req) throws IOException {
+        String boundary = parameter(req.getContentType(), "boundary");
+        if (boundary == null || boundary.isEmpty()) {
+            throw new IOException("В запросе multipart/form-data не указан boundary.");
+        }
+        return new MultipartFileStream(req.getInputStream(), boundary);
+    }
+
+    /**
+     * Находит часть с указанным именем поля и возвращает поток ее содержимого.
+     * @return поток, заканчивающийся на границе части, или null, если поля нет
+     */
+    InputStream openPart(String fieldName) throws IOException {
+        skipPart();
+        while (ensure(2)) {
+            if (buf[pos] == '-' && buf[pos + 1] == '-') {
+                return null;
+            }
+            readLine();
+
+            String name = null;
+            boolean file = false;
+            for (String line = readLine(); line != null && !line.isEmpty(); line = readLine()) {
+                if (line.toLowerCase(Locale.ROOT).startsWith("content-disposition:")) {
+                    name = parameter(line, "name");
+                    file = parameter(line, "filename") != null;
+                }
+            }
+
+            if (fieldName.equals(name)) {
+                return new PartInputStream();
+            }
+            if (name != null && !file) {
+                fields.put(name, readField());
+            } else {
+                skipPart();
+            }
+        }
+        return null;
+    }
+
+    Map<String, String> getFields() {
+        return fields;
+    }
+
+    private String readField() throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        byte[] chunk = new byte[256];
+        int n;
+        while ((n = readPart(chunk, 0, chunk.length)) != -1) {
+            if (value.size() < MAX_FIELD) {
+                value.write(chunk, 0, Math.min(n, MAX_FIELD - value.size()));
+            }
+        }
+        partDone = false;
+        return value.toString(StandardCharsets.UTF_8);
+    }
+
+    private void skipPart() throws IOException {
+        byte[] scratch = new byte[1024];
+        while (readPart(scratch, 0, scratch.length) != -1) {
+            // пропускаем содержимое
+        }
+        partDone = false;
+    }
+
+    private int readPart(byte[] b, int off, int len) throws IOException {
+        if (partDone) {
+            return -1;
+        }
+        ensure(delimiter.length);
+        int idx = indexOfDelimiter();
+        if (idx == pos) {
+            pos += delimiter.length;
+            partDone = true;
+            return -1;
+        }
+
+        int available;
+        if (idx >= 0) {
+            available = idx - pos;
+        } else if (exhausted) {
+            if (limit == pos) {
+                throw new IOException("Неожиданный конец multipart-запроса.");
+            }
+            available = limit - pos;
+        } else {
+            // Хвост буфера может оказаться началом разделителя - его не отдаем
+            available = limit - pos - (delimiter.length - 1);
+        }
+
+        int n = Math.min(available, len);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (ensure(1)) {
+            byte b = buf[pos++];
+            if (b == '\n') {
+                return line.toString(StandardCharsets.UTF_8).stripTrailing();
+            }
+            if (line.size() >= MAX_LINE) {
+                throw new IOException("Слишком длинный заголовок multipart-части.");
+            }
+            line.write(b);
+        }
+        return line.size() > 0 ? line.toString(StandardCharsets.UTF_8) : null;
+    }
+
+    private boolean ensure(int n) throws IOException {
+        if (limit - pos >= n) {
+            return true;
+        }
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < n && !exhausted) {
+            int r = in.read(buf, limit, buf.length - limit);
+            if (r < 0) {
+                exhausted = true;
+            } else {
+                limit += r;
+            }
+        }
+        return limit - pos >= n;
+    }
+
+    private int indexOfDelimiter() {
+        outer:
+        for (int i = pos; i <= limit - delimiter.length; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buf[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String parameter(String header, String name) {
+        if (header == null) {
+            return null;
+        }
+        for (String token : header.split(";")) {
+            String t = token.trim();
+            int eq = t.indexOf('=');
+            if (eq > 0 && t.substring(0, eq).trim().equalsIgnoreCase(name)) {
+                String value = t.substring(eq + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private class PartInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            return readPart(b, off, len);
+        }
+    }
+}
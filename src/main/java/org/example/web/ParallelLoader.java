@@ -0,0 +1,152 @@
+package org.example.web;
+
+import org.example.db.SqlTrace;
+import org.example.exception.DataAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Параллельная загрузка независимых данных страницы.
+ * Задачи выполняются на виртуальных потоках, если JVM их поддерживает, иначе - в ограниченном пуле.
+ * В обоих режимах одновременно выполняется не больше {@code threads} задач: для виртуальных потоков
+ * это ограничивает семафор, иначе одна волна запросов забрала бы все соединения пула БД.
+ * Каждая задача работает вне единицы работы запроса и получает собственный EntityManager,
+ * поэтому одна страница может занять из пула столько соединений, сколько в ней параллельных запросов.
+ */
+final class ParallelLoader {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelLoader.class);
+
+    private static final int QUEUE_PER_THREAD = 16;
+
+    private final ExecutorService executor;
+    private final long timeoutMillis;
+
+    /** Ограничение одновременных задач для виртуальных потоков; null для пула - его размер и есть ограничение. */
+    private final Semaphore permits;
+
+    ParallelLoader(int threads, long timeoutMillis) {
+        ExecutorService virtual = newVirtualExecutor();
+        if (virtual != null) {
+            logger.info("Параллельная загрузка данных: виртуальные потоки, не больше {} задач одновременно.", threads);
+            this.executor = virtual;
+            this.permits = new Semaphore(threads);
+        } else {
+            logger.info("Параллельная загрузка данных: пул из {} потоков.", threads);
+            this.executor = newPool(threads);
+            this.permits = null;
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    <T> Future<T> load(Supplier<T> task) {
+        // SQL задачи учитывается в трассе запроса, который ее запустил
+        Supplier<T> traced = SqlTrace.propagate(task);
+        if (permits == null) {
+            return executor.submit(traced::get);
+        }
+        return executor.submit(() -> {
+            permits.acquire();
+            try {
+                return traced.get();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Ждет завершения всех задач, но не дольше таймаута на запрос.
+     * При таймауте незавершенные задачи отменяются с прерыванием их потоков; ошибка задачи
+     * пробрасывается как есть. После успешного ожидания результаты берутся через {@link #result}.
+     */
+    void await(Future<?>... tasks) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (Future<?> task : tasks) {
+                task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            cancel(tasks);
+            throw new DataAccessException("Превышено время загрузки данных (" + timeoutMillis + " мс).", e);
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Загрузка данных прервана.", e);
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * Результат задачи, уже завершенной {@link #await}.
+     */
+    static <T> T result(Future<T> task) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("Загрузка данных прервана.", e);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static RuntimeException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new DataAccessException("Ошибка параллельной загрузки данных.", cause);
+    }
+
+    private static void cancel(Future<?>[] tasks) {
+        // Future из submit при отмене прерывает поток задачи (в отличие от CompletableFuture),
+        // поэтому зависшая задача не держит поток и соединение после ответа по таймауту
+        for (Future<?> task : tasks) {
+            task.cancel(true);
+        }
+    }
+
+    private static ExecutorService newVirtualExecutor() {
+        // Сборка под Java 17: виртуальные потоки подключаем только если они есть в рантайме
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPool(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "parallel-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // При переполнении очереди задача выполняется в потоке запроса - загрузка просто становится последовательной
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), threadFactory,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.web;
+
+import org.example.exception.ServiceBusyException;
+import org.example.util.PasswordHasher;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Проверка и вычисление хешей паролей в отдельном ограниченном пуле.
+ * <p>
+ * Хеш пароля намеренно дорог (сотни миллисекунд процессора), поэтому волна входов в потоках запросов
+ * заняла бы их все, и остальные команды встали бы. Здесь одновременно считается не больше
+ * {@code threads} хешей, ждать может не больше {@code queueSize} запросов; сверх этого и по
+ * истечении таймаута бросается {@link ServiceBusyException}, и вход отвечает 503, не задерживая остальных.
+ */
+final class PasswordVerifier {
+
+    record Result(boolean matches, String rehash) {
+    }
+
+    private final PasswordHasher hasher;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMillis;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Проверка для несуществующего логина и для неверного пароля к старому хешу стоит столько же,
+     * сколько для актуального: иначе по времени ответа было бы видно, какие логины существуют.
+     */
+    private final String dummyHash;
+
+    PasswordVerifier(PasswordHasher hasher, int threads, int queueSize, long timeoutMillis) {
+        this.hasher = hasher;
+        this.timeoutMillis = timeoutMillis;
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "password-hasher-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.dummyHash = hasher.hash(Long.toHexString(System.nanoTime()));
+    }
+
+    /**
+     * Проверяет пароль; если хеш устарел, сразу вычисляет новый.
+     *
+     * @param encoded хеш из БД или null, если пользователь не найден
+     */
+    Result verify(String password, String encoded) {
+        if (password == null || password.isEmpty()) {
+            return new Result(false, null);
+        }
+        return run(() -> {
+            if (encoded == null) {
+                hasher.verify(password, dummyHash);
+                return new Result(false, null);
+            }
+            boolean matches = hasher.verify(password, encoded);
+            if (!hasher.needsRehash(encoded)) {
+                return new Result(matches, null);
+            }
+            // Старый хеш (SHA-256 или меньше итераций) проверяется быстро. При совпадении дорогим
+            // делает ответ перехеширование, при несовпадении - такая же проверка по dummyHash
+            if (!matches) {
+                hasher.verify(password, dummyHash);
+                return new Result(false, null);
+            }
+            return new Result(true, hasher.hash(password));
+        });
+    }
+
+    String hash(String password) {
+        return run(() -> hasher.hash(password));
+    }
+
+    int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    int getActive() {
+        return executor.getActiveCount();
+    }
+
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Очередь проверки паролей заполнена.", e);
+        }
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new ServiceBusyException("Превышено время проверки пароля (" + timeoutMillis + " мс).", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Проверка пароля прервана.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.web;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.entity.User;
+
+/**
+ * Где хранится вошедший пользователь и flash-сообщения между запросами.
+ * <p>
+ * Режим задается параметром контекста {@code sessionMode}:
+ * {@code container} (по умолчанию) - {@link SessionPrincipalStore}, сессия контейнера;
+ * {@code signed} - {@link SignedCookiePrincipalStore}, подписанная cookie без состояния на сервере,
+ * для нескольких одинаковых узлов за балансировщиком без липких сессий.
+ * <p>
+ * Версии данных ({@link org.example.db.DataVersions}) - счетчики в памяти узла, другие узлы о записи
+ * не узнают. Поэтому для хранилища с {@link #isMultiNode()} фильтр приложения отключает все, что
+ * на них опирается: кэш фрагментов, условные GET (ETag) и кэш каталога услуг. Иначе узел, не видевший
+ * записи, отдавал бы старые фрагменты и каталог и подтверждал бы 304 устаревшую страницу.
+ * По той же причине выключается общий кэш сущностей EclipseLink ({@link org.example.db.JpaManager}):
+ * массовый UPDATE на одном узле не сбрасывает его на остальных.
+ * Реализация общая для фильтров приложения и хранится в атрибуте {@link ServletContext}.
+ */
+interface PrincipalStore {
+
+    String ATTRIBUTE = PrincipalStore.class.getName();
+
+    static PrincipalStore get(ServletContext servletContext) {
+        synchronized (servletContext) {
+            PrincipalStore store = (PrincipalStore) servletContext.getAttribute(ATTRIBUTE);
+            if (store == null) {
+                store = "signed".equalsIgnoreCase(servletContext.getInitParameter("sessionMode"))
+                        ? SignedCookiePrincipalStore.create(servletContext)
+                        : new SessionPrincipalStore();
+                servletContext.setAttribute(ATTRIBUTE, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Могут ли запросы одного пользователя обрабатываться разными узлами.
+     */
+    default boolean isMultiNode() {
+        return false;
+    }
+
+    /**
+     * Проверяет пользователя в начале обработки запроса (SecurityFilter); реализация может
+     * при этом продлить срок входа через ответ.
+     */
+    default User authenticate(HttpServletRequest req, HttpServletResponse resp) {
+        return currentUser(req);
+    }
+
+    /**
+     * @return вошедший пользователь или null для гостя
+     */
+    User currentUser(HttpServletRequest req);
+
+    void login(HttpServletRequest req, HttpServletResponse resp, User user);
+
+    void logout(HttpServletRequest req, HttpServletResponse resp);
+
+    void setFlashError(HttpServletRequest req, HttpServletResponse resp, String message);
+
+    boolean hasFlashError(HttpServletRequest req);
+
+    /**
+     * Возвращает flash-сообщение и удаляет его: оно показывается один раз.
+     */
+    String takeFlashError(HttpServletRequest req, HttpServletResponse resp);
+}
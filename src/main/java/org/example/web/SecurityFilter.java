@@ -3,9 +3,10 @@ package org.example.web;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.servlet.http.HttpSession;
 import org.example.entity.Role;
 import org.example.entity.User;
+import org.example.metrics.CommandMetrics;
+import org.example.metrics.MetricsRegistry;
 
 import java.io.IOException;
 import java.util.Set;
@@ -22,6 +23,13 @@ public class SecurityFilter implements Filter {
             "details"
     );
 
+    private PrincipalStore principalStore;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        this.principalStore = PrincipalStore.get(filterConfig.getServletContext());
+    }
+
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
             throws IOException, ServletException {
@@ -30,26 +38,26 @@ public class SecurityFilter implements Filter {
         HttpServletResponse resp = (HttpServletResponse) response;
         String path = req.getRequestURI().substring(req.getContextPath().length());
 
-        if (path.startsWith("/css/") || path.startsWith("/js/") || path.startsWith("/images/") || path.equals("/favicon.ico")) {
+        if (StaticAssets.isStaticPath(path)) {
             chain.doFilter(request, response);
             return;
         }
 
-        HttpSession session = req.getSession();
         String command = req.getParameter("command");
         if (command == null) command = "home";
 
-        User user = (User) session.getAttribute("user");
+        User user = principalStore.authenticate(req, resp);
         Role role = (user != null) ? user.getRole() : Role.GUEST;
 
         if (isAccessAllowed(role, command)) {
             chain.doFilter(request, response);
         } else {
+            MetricsRegistry.command(command).count(CommandMetrics.Outcome.ACCESS_DENIED);
             String errorMsg = (role == Role.GUEST)
                     ? "Пожалуйста, войдите в систему."
                     : "У вас нет прав для выполнения этой операции.";
 
-            session.setAttribute("flashErrorMessage", errorMsg);
+            principalStore.setFlashError(req, resp, errorMsg);
 
             if (role == Role.GUEST) {
                 resp.sendRedirect(req.getContextPath() + "/app?command=showLoginForm");
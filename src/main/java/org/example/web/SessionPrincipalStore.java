@@ -0,0 +1,67 @@
+package org.example.web;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.example.entity.User;
+
+/**
+ * Пользователь и flash-сообщения в сессии контейнера. Сессия создается только тогда, когда в ней
+ * действительно нужно что-то сохранить - при входе, регистрации или для flash-сообщения; чтение ее
+ * не создает, поэтому гости, роботы и проверки доступности не занимают память контейнера.
+ */
+final class SessionPrincipalStore implements PrincipalStore {
+
+    static final String USER = "user";
+    static final String FLASH_ERROR = "flashErrorMessage";
+
+    @Override
+    public User currentUser(HttpServletRequest req) {
+        HttpSession session = req.getSession(false);
+        return session != null ? (User) session.getAttribute(USER) : null;
+    }
+
+    /**
+     * Запоминает вошедшего пользователя. Идентификатор уже существующей гостевой сессии
+     * меняется, чтобы известный до входа идентификатор нельзя было использовать после него.
+     */
+    @Override
+    public void login(HttpServletRequest req, HttpServletResponse resp, User user) {
+        if (req.getSession(false) != null) {
+            req.changeSessionId();
+        }
+        req.getSession(true).setAttribute(USER, user);
+    }
+
+    @Override
+    public void logout(HttpServletRequest req, HttpServletResponse resp) {
+        HttpSession session = req.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
+    }
+
+    @Override
+    public void setFlashError(HttpServletRequest req, HttpServletResponse resp, String message) {
+        req.getSession(true).setAttribute(FLASH_ERROR, message);
+    }
+
+    @Override
+    public boolean hasFlashError(HttpServletRequest req) {
+        HttpSession session = req.getSession(false);
+        return session != null && session.getAttribute(FLASH_ERROR) != null;
+    }
+
+    @Override
+    public String takeFlashError(HttpServletRequest req, HttpServletResponse resp) {
+        HttpSession session = req.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        String message = (String) session.getAttribute(FLASH_ERROR);
+        if (message != null) {
+            session.removeAttribute(FLASH_ERROR);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,267 @@
+package org.example.web;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.db.JpaManager;
+import org.example.entity.Role;
+import org.example.entity.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+
+/**
+ * Пользователь в cookie, подписанной HMAC-SHA256: {@code id.роль.срок.логин.подпись}.
+ * Проверка не требует ни сессии, ни обращения к БД, поэтому запрос может обработать любой узел,
+ * знающий общий ключ ({@code sessionSecret}).
+ * <p>
+ * Цена отсутствия состояния: изменение роли и выход действуют на другие копии cookie только
+ * по истечении срока ({@code sessionTtlMinutes}), поэтому срок короткий и продлевается
+ * на активных запросах, когда прошла половина. Flash-сообщение хранится в отдельной подписанной
+ * cookie на минуту.
+ * <p>
+ * Режим рассчитан на несколько узлов, поэтому кэши, зависящие от версий данных узла, при нем
+ * отключаются (см. {@link PrincipalStore}).
+ */
+final class SignedCookiePrincipalStore implements PrincipalStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SignedCookiePrincipalStore.class);
+
+    static final String AUTH_COOKIE = "auth";
+    static final String FLASH_COOKIE = "flash";
+
+    private static final String USER_ATTRIBUTE = SignedCookiePrincipalStore.class.getName() + ".user";
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_SECRET_BYTES = 32;
+    private static final int DEFAULT_TTL_MINUTES = 60;
+    private static final int FLASH_MAX_AGE_SECONDS = 60;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final long ttlSeconds;
+    private final ThreadLocal<Mac> macs;
+
+    SignedCookiePrincipalStore(byte[] secret, long ttlSeconds) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttlSeconds = ttlSeconds;
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    static SignedCookiePrincipalStore create(ServletContext servletContext) {
+        String configured = servletContext.getInitParameter("sessionSecret");
+        byte[] secret;
+        if (configured == null || configured.isBlank()) {
+            secret = new byte[MIN_SECRET_BYTES];
+            new SecureRandom().nextBytes(secret);
+            logger.warn("sessionSecret не задан: ключ подписи сгенерирован случайно. "
+                    + "Входы не переживут перезапуск и не будут приняты другими узлами.");
+        } else {
+            secret = configured.getBytes(StandardCharsets.UTF_8);
+            if (secret.length < MIN_SECRET_BYTES) {
+                logger.warn("sessionSecret короче {} байт, подпись можно подобрать", MIN_SECRET_BYTES);
+            }
+        }
+        long ttlMinutes = DEFAULT_TTL_MINUTES;
+        try {
+            ttlMinutes = Long.parseLong(servletContext.getInitParameter("sessionTtlMinutes"));
+        } catch (Exception e) {
+            // значение по умолчанию
+        }
+        logger.info("Вход хранится в подписанной cookie, срок {} мин.", ttlMinutes);
+        // Общий кэш EclipseLink - тоже состояние узла; JpaManager читает свойство при первом обращении
+        System.setProperty(JpaManager.SHARED_CACHE_PROPERTY, "false");
+        return new SignedCookiePrincipalStore(secret, ttlMinutes * 60);
+    }
+
+    @Override
+    public boolean isMultiNode() {
+        return true;
+    }
+
+    @Override
+    public User authenticate(HttpServletRequest req, HttpServletResponse resp) {
+        String token = cookieValue(req, AUTH_COOKIE);
+        if (token == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis() / 1000;
+        Principal principal = parse(token, now);
+        if (principal == null) {
+            // Подделанная, испорченная или просроченная cookie - удаляем, чтобы не проверять ее снова
+            addCookie(req, resp, AUTH_COOKIE, "", 0);
+            return null;
+        }
+        if (principal.expires - now < ttlSeconds / 2) {
+            addCookie(req, resp, AUTH_COOKIE, issue(principal.user, now), ttlSeconds);
+        }
+        req.setAttribute(USER_ATTRIBUTE, principal.user);
+        return principal.user;
+    }
+
+    @Override
+    public User currentUser(HttpServletRequest req) {
+        Object verified = req.getAttribute(USER_ATTRIBUTE);
+        if (verified != null) {
+            return (User) verified;
+        }
+        String token = cookieValue(req, AUTH_COOKIE);
+        Principal principal = token != null ? parse(token, System.currentTimeMillis() / 1000) : null;
+        if (principal != null) {
+            req.setAttribute(USER_ATTRIBUTE, principal.user);
+            return principal.user;
+        }
+        return null;
+    }
+
+    @Override
+    public void login(HttpServletRequest req, HttpServletResponse resp, User user) {
+        long now = System.currentTimeMillis() / 1000;
+        addCookie(req, resp, AUTH_COOKIE, issue(user, now), ttlSeconds);
+        req.setAttribute(USER_ATTRIBUTE, principalOf(user));
+    }
+
+    @Override
+    public void logout(HttpServletRequest req, HttpServletResponse resp) {
+        addCookie(req, resp, AUTH_COOKIE, "", 0);
+        req.removeAttribute(USER_ATTRIBUTE);
+    }
+
+    @Override
+    public void setFlashError(HttpServletRequest req, HttpServletResponse resp, String message) {
+        String payload = ENCODER.encodeToString(message.getBytes(StandardCharsets.UTF_8));
+        addCookie(req, resp, FLASH_COOKIE, payload + '.' + sign(FLASH_COOKIE + '.' + payload),
+                FLASH_MAX_AGE_SECONDS);
+    }
+
+    @Override
+    public boolean hasFlashError(HttpServletRequest req) {
+        return cookieValue(req, FLASH_COOKIE) != null;
+    }
+
+    @Override
+    public String takeFlashError(HttpServletRequest req, HttpServletResponse resp) {
+        String value = cookieValue(req, FLASH_COOKIE);
+        if (value == null) {
+            return null;
+        }
+        addCookie(req, resp, FLASH_COOKIE, "", 0);
+        int dot = value.indexOf('.');
+        if (dot < 0 || !verify(FLASH_COOKIE + '.' + value.substring(0, dot), value.substring(dot + 1))) {
+            return null;
+        }
+        try {
+            return new String(DECODER.decode(value.substring(0, dot)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private record Principal(User user, long expires) {
+    }
+
+    /**
+     * В cookie попадает только то, что нужно страницам и проверке прав; хеш пароля не передается.
+     */
+    private static User principalOf(User user) {
+        User principal = new User(user.getLogin(), null, user.getRole());
+        principal.setId(user.getId());
+        return principal;
+    }
+
+    private String issue(User user, long now) {
+        String payload = user.getId() + "." + user.getRole().name() + "." + (now + ttlSeconds) + "."
+                + ENCODER.encodeToString(user.getLogin().getBytes(StandardCharsets.UTF_8));
+        return payload + '.' + sign(payload);
+    }
+
+    private Principal parse(String token, long now) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 5) {
+            return null;
+        }
+        String payload = parts[0] + '.' + parts[1] + '.' + parts[2] + '.' + parts[3];
+        if (!verify(payload, parts[4])) {
+            return null;
+        }
+        try {
+            long expires = Long.parseLong(parts[2]);
+            if (expires <= now) {
+                return null;
+            }
+            User user = new User(new String(DECODER.decode(parts[3]), StandardCharsets.UTF_8), null,
+                    Role.valueOf(parts[1]));
+            user.setId(Integer.parseInt(parts[0]));
+            return new Principal(user, expires);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String sign(String payload) {
+        return ENCODER.encodeToString(macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private boolean verify(String payload, String signature) {
+        byte[] expected = macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        try {
+            // Сравнение за постоянное время: время ответа не подсказывает, сколько байт подписи совпало
+            return MessageDigest.isEqual(expected, DECODER.decode(signature));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Заголовок Set-Cookie собирается вручную: атрибут SameSite у {@link Cookie} появился только
+     * в Servlet 6.0, а приложение работает и на Jetty 11 (Servlet 5.0).
+     * Значения cookie - Base64url и точки, экранирование не требуется.
+     */
+    private static void addCookie(HttpServletRequest req, HttpServletResponse resp, String name, String value,
+                                  long maxAge) {
+        String contextPath = req.getContextPath();
+        StringBuilder header = new StringBuilder(name).append('=').append(value)
+                .append("; Path=").append(contextPath.isEmpty() ? "/" : contextPath)
+                .append("; Max-Age=").append(maxAge)
+                .append("; Expires=").append(DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                        ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(maxAge)))
+                .append("; HttpOnly");
+        if (req.isSecure()) {
+            header.append("; Secure");
+        }
+        header.append("; SameSite=Lax");
+        resp.addHeader("Set-Cookie", header.toString());
+    }
+
+    private static String cookieValue(HttpServletRequest req, String name) {
+        Cookie[] cookies = req.getCookies();
+        if (cookies != null) {
+            for (Cookie c : cookies) {
+                if (name.equals(c.getName()) && !c.getValue().isEmpty()) {
+                    return c.getValue();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.web;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+
+/**
+ * Отдает статические файлы из памяти ({@link StaticAssets}), не доходя до фильтров безопасности
+ * и фронт-контроллера.
+ * <p>
+ * Адрес с отпечатком содержимого неизменен по определению, поэтому отдается с {@code immutable}
+ * и сроком в год: браузер больше не перепроверяет его на каждой странице. Исходный адрес
+ * (например, из error.html) перепроверяется по ETag. Стоит перед {@link CompressionFilter}:
+ * сжатые копии готовы заранее, и сжимать их на каждый запрос не нужно.
+ */
+public class StaticAssetFilter implements Filter {
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, no-cache";
+
+    private StaticAssets assets;
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        this.assets = StaticAssets.get(filterConfig.getServletContext());
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+
+        StaticAssets.Asset asset = null;
+        String cacheControl = null;
+        if (StaticAssets.isStaticPath(path)) {
+            asset = assets.findByVersionedPath(path);
+            cacheControl = IMMUTABLE;
+            if (asset == null) {
+                asset = assets.findByPath(path);
+                cacheControl = REVALIDATE;
+            }
+        }
+        String method = req.getMethod();
+        if (asset == null || !("GET".equals(method) || "HEAD".equals(method))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        resp.setHeader("Cache-Control", cacheControl);
+        // Сжатая и исходная копии - разные байты, поэтому ETag слабый
+        resp.setHeader("ETag", "W/" + asset.etag());
+        if (asset.gzipped() != null) {
+            resp.setHeader("Vary", "Accept-Encoding");
+        }
+        if (matches(req.getHeader("If-None-Match"), asset.etag())) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = asset.content();
+        if (asset.gzipped() != null
+                && CompressingResponse.GZIP.equals(CompressionFilter.negotiate(req.getHeader("Accept-Encoding")))) {
+            body = asset.gzipped();
+            resp.setHeader("Content-Encoding", CompressingResponse.GZIP);
+        }
+        resp.setContentType(asset.contentType());
+        resp.setContentLength(body.length);
+        if ("GET".equals(method)) {
+            resp.getOutputStream().write(body);
+        }
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(etag) || value.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,172 @@
+package org.example.web;
+
+import jakarta.servlet.ServletContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Статические файлы приложения (css, js, изображения), загруженные в память при старте.
+ * <p>
+ * Каждый файл доступен и по исходному пути, и по пути с отпечатком содержимого
+ * ({@code /css/style.css -> /css/style.1a2b3c4d5e.css}). Шаблоны ссылаются на второй,
+ * поэтому браузер может хранить файл сколько угодно: после правки изменится и адрес.
+ * Набор общий для фильтров одного приложения и хранится в атрибуте {@link ServletContext}.
+ */
+final class StaticAssets {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticAssets.class);
+
+    private static final String ATTRIBUTE = StaticAssets.class.getName();
+    static final List<String> DIRECTORIES = List.of("/css/", "/js/", "/images/");
+    private static final String FAVICON = "/favicon.ico";
+    private static final int FINGERPRINT_LENGTH = 10;
+    // Файл в корне приложения не попадает под DIRECTORIES ни по исходному пути, ни по пути с отпечатком
+    private static final Pattern FAVICON_PATHS =
+            Pattern.compile("/favicon(\\.[0-9a-f]{" + FINGERPRINT_LENGTH + "})?\\.ico");
+    private static final int MAX_ASSET_BYTES = 1024 * 1024;
+
+    record Asset(String path, String versionedPath, String contentType, byte[] content, byte[] gzipped, String etag) {
+    }
+
+    private final Map<String, Asset> byPath = new HashMap<>();
+    private final Map<String, Asset> byVersionedPath = new HashMap<>();
+
+    private final boolean precompress;
+
+    private StaticAssets(boolean precompress) {
+        this.precompress = precompress;
+    }
+
+    /**
+     * Возвращает набор файлов приложения, загружая его при первом обращении.
+     */
+    static StaticAssets get(ServletContext servletContext) {
+        synchronized (servletContext) {
+            StaticAssets assets = (StaticAssets) servletContext.getAttribute(ATTRIBUTE);
+            if (assets == null) {
+                assets = load(servletContext);
+                servletContext.setAttribute(ATTRIBUTE, assets);
+            }
+            return assets;
+        }
+    }
+
+    static boolean isStaticPath(String path) {
+        return DIRECTORIES.stream().anyMatch(path::startsWith) || FAVICON_PATHS.matcher(path).matches();
+    }
+
+    private static StaticAssets load(ServletContext servletContext) {
+        StaticAssets assets = new StaticAssets(
+                !"false".equalsIgnoreCase(servletContext.getInitParameter("precompressAssets")));
+        long bytes = 0;
+        for (String directory : DIRECTORIES) {
+            bytes += assets.loadDirectory(servletContext, directory);
+        }
+        bytes += assets.loadFile(servletContext, FAVICON);
+        logger.info("Статических файлов загружено в память: {} ({} КБ)", assets.byPath.size(), bytes / 1024);
+        return assets;
+    }
+
+    private long loadDirectory(ServletContext servletContext, String directory) {
+        Set<String> paths = servletContext.getResourcePaths(directory);
+        if (paths == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String path : paths) {
+            bytes += path.endsWith("/") ? loadDirectory(servletContext, path) : loadFile(servletContext, path);
+        }
+        return bytes;
+    }
+
+    private long loadFile(ServletContext servletContext, String path) {
+        try (InputStream in = servletContext.getResourceAsStream(path)) {
+            if (in == null) {
+                return 0;
+            }
+            byte[] content = in.readNBytes(MAX_ASSET_BYTES + 1);
+            if (content.length > MAX_ASSET_BYTES) {
+                // Большие файлы отдает контейнер: держать их в памяти ради редких запросов невыгодно
+                logger.info("Файл {} больше {} КБ и не кэшируется", path, MAX_ASSET_BYTES / 1024);
+                return 0;
+            }
+            String contentType = servletContext.getMimeType(path);
+            if (contentType == null) {
+                contentType = "application/octet-stream";
+            } else if (contentType.startsWith("text/") && !contentType.contains("charset")) {
+                contentType += ";charset=UTF-8";
+            }
+            String fingerprint = fingerprint(content);
+            Asset asset = new Asset(path, versionedPath(path, fingerprint), contentType, content,
+                    precompress ? gzip(contentType, content) : null, "\"" + fingerprint + "\"");
+            byPath.put(path, asset);
+            byVersionedPath.put(asset.versionedPath(), asset);
+            return content.length;
+        } catch (IOException e) {
+            logger.warn("Не удалось загрузить статический файл {}", path, e);
+            return 0;
+        }
+    }
+
+    /**
+     * @return путь с отпечатком для исходного пути или null, если такого файла нет
+     */
+    String versionedPath(String path) {
+        Asset asset = byPath.get(path);
+        return asset != null ? asset.versionedPath() : null;
+    }
+
+    Asset findByPath(String path) {
+        return byPath.get(path);
+    }
+
+    Asset findByVersionedPath(String path) {
+        return byVersionedPath.get(path);
+    }
+
+    private static String versionedPath(String path, String fingerprint) {
+        int slash = path.lastIndexOf('/');
+        int dot = path.lastIndexOf('.');
+        if (dot <= slash) {
+            return path + "." + fingerprint;
+        }
+        return path.substring(0, dot) + "." + fingerprint + path.substring(dot);
+    }
+
+    private static String fingerprint(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest).substring(0, FINGERPRINT_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Заранее сжатая копия для текстовых типов; null, если сжатие не дает выигрыша.
+     */
+    private static byte[] gzip(String contentType, byte[] content) throws IOException {
+        if (!(contentType.startsWith("text/") || contentType.contains("javascript")
+                || contentType.contains("json") || contentType.contains("svg"))) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        }
+        return out.size() < content.length ? out.toByteArray() : null;
+    }
+}
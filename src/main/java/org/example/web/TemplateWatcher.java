@@ -0,0 +1,84 @@
+package org.example.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Режим разработки: следит за каталогом шаблонов и сбрасывает кэш шаблонов при изменении файлов,
+ * так что правки видны без перезапуска, а неизмененные шаблоны не разбираются на каждый запрос.
+ */
+final class TemplateWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateWatcher.class);
+
+    private final Path directory;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final LongAdder reloads = new LongAdder();
+
+    private TemplateWatcher(Path directory, Runnable onChange) throws IOException {
+        this.directory = directory;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    static TemplateWatcher start(Path directory, Runnable onChange) throws IOException {
+        TemplateWatcher watcher = new TemplateWatcher(directory, onChange);
+        Thread thread = new Thread(watcher::watch, "template-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Шаблоны перечитываются при изменении файлов в {}", directory);
+        return watcher;
+    }
+
+    long getReloads() {
+        return reloads.sum();
+    }
+
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Ошибка остановки наблюдения за шаблонами", e);
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // При переполнении очереди событий имя файла неизвестно - сбрасываем кэш целиком
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || event.context().toString().endsWith(".html");
+                }
+                if (changed) {
+                    onChange.run();
+                    reloads.increment();
+                    logger.info("Шаблоны в {} изменены, кэш шаблонов сброшен.", directory);
+                }
+                if (!key.reset()) {
+                    logger.warn("Каталог шаблонов {} больше недоступен, наблюдение остановлено.", directory);
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // остановка приложения
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}